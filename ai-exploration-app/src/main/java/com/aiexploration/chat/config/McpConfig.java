@@ -6,7 +6,6 @@ import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
@@ -18,8 +17,15 @@ import java.util.Map;
 public class McpConfig {
     private boolean enabled;
     private DefaultServer defaultServer;
-    private Connection connection;
-    private int requestTimeout;
+    private Connection connection = new Connection();
+    private Request request = new Request();
+    private Session session = new Session();
+    private Health health = new Health();
+    private Balancer balancer = new Balancer();
+    private Channel channel = new Channel();
+    private Batch batch = new Batch();
+    private Schema schema = new Schema();
+    private McpServerConfig.Encoding encoding = McpServerConfig.Encoding.JSON; // default HTTP body encoding
 
     @Data
     public static class DefaultServer {
@@ -30,7 +36,61 @@ public class McpConfig {
 
     @Data
     public static class Connection {
-        private int timeout;
+        private int timeout = 30000;
+        private int readTimeout = 30000;
+        private int maxConnections = 50;
+        private int maxIdleTime = 60000;
+        private int maxLifeTime = 300000;
+    }
+
+    @Data
+    public static class Request {
+        private int timeout = 60000;
+        private int maxRetries = 1; // repeats of a request the server rejected as overloaded (error.data.retryable)
+    }
+
+    @Data
+    public static class Session {
+        private int poolSize = 1;
+    }
+
+    @Data
+    public static class Health {
+        private boolean enabled = true;
+        private int interval = 30000;
+        private int timeout = 5000;
+        private int failureThreshold = 3;
+        private int openDuration = 60000;
+    }
+
+    @Data
+    public static class Balancer {
+        private int failureThreshold = 3;
+        private int ejectionDuration = 30000;
+        private double latencyDecay = 0.3; // weight of the newest sample in the latency EWMA
+    }
+
+    @Data
+    public static class Channel {
+        private int maxInFlight = 64; // per multiplexed channel (WebSocket, stdio)
+    }
+
+    @Data
+    public static class Batch {
+        private int maxRequests = 500;
+        private int perServerConcurrency = 8;
+    }
+
+    @Data
+    public static class Schema {
+        private Rendering rendering = Rendering.COMPACT; // form of the tool definitions sent to the model
+        private int maxDescriptionLength = 200;
+        private int maxPropertyDescriptionLength = 120;
+
+        public enum Rendering {
+            COMPACT,
+            VERBATIM
+        }
     }
 
     @Bean
@@ -55,11 +115,6 @@ public class McpConfig {
                 .build();
     }
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
-    }
-
     @Bean
     public ObjectMapper objectMapper() {
         ObjectMapper mapper = new ObjectMapper();
@@ -1,15 +1,21 @@
 package com.aiexploration.chat.controller;
 
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpEncodingStats;
+import com.aiexploration.chat.model.mcp.McpReplicaStatus;
 import com.aiexploration.chat.model.mcp.McpServerConfig;
 import com.aiexploration.chat.model.mcp.McpTool;
 import com.aiexploration.chat.model.mcp.McpToolExecutionRequest;
 import com.aiexploration.chat.model.mcp.McpToolExecutionResponse;
+import com.aiexploration.chat.service.McpFunctionExecutor;
 import com.aiexploration.chat.service.McpServerManager;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.HashMap;
 import java.util.List;
@@ -22,6 +28,8 @@ import java.util.Map;
 public class McpController {
 
     private final McpServerManager serverManager;
+    private final McpFunctionExecutor functionExecutor;
+    private final McpConfig mcpConfig;
 
     // ========== Server Management Endpoints ==========
 
@@ -66,6 +74,23 @@ public class McpController {
         return ResponseEntity.noContent().build();
     }
 
+    @GetMapping("/servers/{serverId}/replicas")
+    public ResponseEntity<List<McpReplicaStatus>> listReplicas(@PathVariable String serverId) {
+        log.info("Listing replicas of MCP server: {}", serverId);
+
+        if (serverManager.getServer(serverId) == null) {
+            return ResponseEntity.notFound().build();
+        }
+
+        return ResponseEntity.ok(serverManager.getReplicaStatus(serverId));
+    }
+
+    @GetMapping("/encodings/comparison")
+    public ResponseEntity<List<McpEncodingStats>> compareEncodings() {
+        log.info("Comparing MCP wire encodings on recorded payloads");
+        return ResponseEntity.ok(serverManager.compareEncodings());
+    }
+
     @PostMapping("/servers/{serverId}/test")
     public ResponseEntity<Map<String, Object>> testConnection(@PathVariable String serverId) {
         log.info("Testing connection to MCP server: {}", serverId);
@@ -121,6 +146,28 @@ public class McpController {
         return ResponseEntity.ok(tools);
     }
 
+    /**
+     * Estimated token cost of each tool definition, verbatim vs compact
+     */
+    @GetMapping("/tools/rendering")
+    public ResponseEntity<Map<String, Object>> getToolRendering() {
+        Map<String, Object> result = new HashMap<>();
+        result.put("rendering", mcpConfig.getSchema().getRendering());
+        result.put("tools", functionExecutor.getRenderingReport());
+        return ResponseEntity.ok(result);
+    }
+
+    /**
+     * Switch the tool definitions sent to the model between compact and verbatim at runtime,
+     * to compare answer quality and latency
+     */
+    @PutMapping("/tools/rendering")
+    public ResponseEntity<Map<String, Object>> setToolRendering(@RequestParam McpConfig.Schema.Rendering mode) {
+        log.info("Switching MCP tool rendering to {}", mode);
+        mcpConfig.getSchema().setRendering(mode);
+        return getToolRendering();
+    }
+
     // ========== Tool Execution Endpoint ==========
 
     @PostMapping("/tools/execute")
@@ -141,4 +188,21 @@ public class McpController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
         }
     }
+
+    /**
+     * Execute many tools concurrently (across servers) and stream each response as NDJSON
+     * as soon as it finishes. metadata.index is the position of the request in the list.
+     */
+    @PostMapping(value = "/tools/execute-batch", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<McpToolExecutionResponse>> executeTools(@RequestBody List<McpToolExecutionRequest> requests) {
+        log.info("Executing batch of {} MCP tools", requests.size());
+
+        int maxRequests = serverManager.getMaxBatchRequests();
+        if (requests.isEmpty() || requests.size() > maxRequests) {
+            log.warn("Rejecting tool batch of {} requests (max {})", requests.size(), maxRequests);
+            return ResponseEntity.badRequest().build();
+        }
+
+        return ResponseEntity.ok(serverManager.executeTools(requests));
+    }
 }
@@ -0,0 +1,41 @@
+package com.aiexploration.chat.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Last known tool catalog of an MCP server, served on boot until discovery has reconciled it
+ */
+@Entity
+@Table(name = "mcp_tool_snapshots")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpToolSnapshot {
+
+    @Id
+    @Column(name = "server_id")
+    private String serverId;
+
+    @Column(name = "server_name")
+    private String serverName;
+
+    @Column
+    private String etag;
+
+    @Column(nullable = false, columnDefinition = "TEXT")
+    private String tools; // JSON array of McpTool
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void onSave() {
+        updatedAt = LocalDateTime.now();
+    }
+}
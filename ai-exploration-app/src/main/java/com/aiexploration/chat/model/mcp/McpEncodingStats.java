@@ -0,0 +1,20 @@
+package com.aiexploration.chat.model.mcp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpEncodingStats {
+    private McpServerConfig.Encoding encoding;
+    private int payloads;
+    private long totalBytes;
+    private double sizeRatio; // totalBytes relative to JSON
+    private double encodeMicros; // average per payload
+    private double decodeMicros; // average per payload
+    private double decodeMegabytesPerSecond; // decode throughput of the encoded bytes
+}
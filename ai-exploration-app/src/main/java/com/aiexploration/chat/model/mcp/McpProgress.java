@@ -0,0 +1,19 @@
+package com.aiexploration.chat.model.mcp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpProgress {
+    private String serverId;
+    private String toolName;
+    private String progressToken;
+    private double progress;
+    private Double total;
+    private String message;
+}
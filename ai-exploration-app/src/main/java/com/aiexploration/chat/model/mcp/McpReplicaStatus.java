@@ -0,0 +1,21 @@
+package com.aiexploration.chat.model.mcp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpReplicaStatus {
+    private String url;
+    private int inFlight;
+    private double latencyMs; // EWMA of recent response times
+    private int consecutiveFailures;
+    private boolean ejected;
+    private LocalDateTime ejectedUntil;
+}
@@ -1,24 +1,60 @@
 package com.aiexploration.chat.model.mcp;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import lombok.ToString;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Map;
 
 @Data
-@Builder
+@Builder(toBuilder = true)
 @NoArgsConstructor
 @AllArgsConstructor
 public class McpServerConfig {
     private String id;
     private String name;
     private String url;
+    private List<String> replicas; // URLs of identical replicas served as this one logical server, besides url
     private String description;
     private Map<String, String> headers;
     private boolean enabled;
     private LocalDateTime createdAt;
     private String sessionId; // MCP session ID obtained during initialization
+    private Integer sessionPoolSize; // sessions kept per server, defaults to mcp.session.pool-size
+    private McpServerHealth health; // maintained by the health monitor in McpServerManager
+    private boolean toolsListChanged; // server announced capabilities.tools.listChanged on initialize
+
+    @Builder.Default
+    private Transport transport = Transport.HTTP;
+
+    private Encoding encoding; // HTTP body encoding, defaults to mcp.encoding
+
+    // stdio transport: process to spawn, e.g. ["java", "-jar", "server.jar"]
+    private List<String> command;
+    private Map<String, String> environment;
+    private String workingDirectory;
+
+    // Replica view created by McpReplicaBalancer: the logical server it belongs to
+    @JsonIgnore
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private McpServerConfig group;
+
+    public enum Transport {
+        HTTP,
+        STDIO,
+        WEBSOCKET // url is a ws:// or wss:// endpoint, one multiplexed connection per server
+    }
+
+    public enum Encoding {
+        JSON,
+        CBOR,
+        SMILE
+    }
 }
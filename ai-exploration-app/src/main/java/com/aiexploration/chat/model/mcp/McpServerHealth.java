@@ -0,0 +1,28 @@
+package com.aiexploration.chat.model.mcp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpServerHealth {
+    @Builder.Default
+    private CircuitState state = CircuitState.CLOSED;
+    private int consecutiveFailures;
+    private LocalDateTime lastCheckedAt;
+    private LocalDateTime lastSuccessAt;
+    private LocalDateTime openedAt; // when the circuit last opened
+    private String lastError;
+
+    public enum CircuitState {
+        CLOSED,    // healthy, tools are advertised
+        OPEN,      // failing, tools are hidden and calls fail fast
+        HALF_OPEN  // open duration elapsed, the next ping decides
+    }
+}
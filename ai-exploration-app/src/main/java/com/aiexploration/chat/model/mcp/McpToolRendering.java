@@ -0,0 +1,18 @@
+package com.aiexploration.chat.model.mcp;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class McpToolRendering {
+    private String name;
+    private String serverId;
+    private int verbatimTokens; // estimated tokens of the definition as listed by the server
+    private int compactTokens;
+    private String compactDescription;
+}
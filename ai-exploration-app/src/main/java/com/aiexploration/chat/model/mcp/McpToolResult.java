@@ -0,0 +1,122 @@
+package com.aiexploration.chat.model.mcp;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.RawValue;
+
+import java.io.IOException;
+import java.util.StringJoiner;
+
+/**
+ * Result of a tools/call, kept as the raw JSON returned by the server.
+ * The text for the model (content[].text) is taken with {@link #read} in the same streaming pass that reads
+ * the JSON-RPC envelope; the result is written to API responses verbatim, so it is never turned into
+ * a tree or maps along the way.
+ */
+public final class McpToolResult {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final String json;
+    private volatile String text;
+
+    public McpToolResult(String json) {
+        this.json = json;
+    }
+
+    private McpToolResult(String json, String text) {
+        this.json = json;
+        this.text = text;
+    }
+
+    /**
+     * Read a result object from a parser positioned at its START_OBJECT, collecting the text content
+     * while the tokens go by. The raw JSON is the slice of source (the text the parser reads) it spans.
+     */
+    public static McpToolResult read(JsonParser parser, String source) throws IOException {
+        int start = (int) parser.currentTokenLocation().getCharOffset();
+        String text = readText(parser);
+        int end = (int) parser.currentLocation().getCharOffset();
+        String json = source.substring(start, end);
+        return new McpToolResult(json, text != null ? text : json);
+    }
+
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Text content joined by new lines; the raw JSON if the result has no content array
+     */
+    public String getText() {
+        String result = text;
+        if (result == null) {
+            result = extractText(json);
+            text = result;
+        }
+        return result;
+    }
+
+    @JsonValue
+    public RawValue toRawValue() {
+        return new RawValue(json);
+    }
+
+    @Override
+    public String toString() {
+        return json;
+    }
+
+    private static String extractText(String json) {
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return json;
+            }
+            String text = readText(parser);
+            return text != null ? text : json;
+        } catch (IOException e) {
+            return json;
+        }
+    }
+
+    /**
+     * Text content of the object the parser is in, consuming it up to its END_OBJECT; null without a content array
+     */
+    private static String readText(JsonParser parser) throws IOException {
+        String text = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (text == null && "content".equals(field) && value == JsonToken.START_ARRAY) {
+                text = readContentText(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return text;
+    }
+
+    private static String readContentText(JsonParser parser) throws IOException {
+        StringJoiner joiner = new StringJoiner("\n");
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.END_ARRAY) {
+            if (token != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("text".equals(field) && value.isScalarValue() && value != JsonToken.VALUE_NULL) {
+                    joiner.add(parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return joiner.toString();
+    }
+}
@@ -0,0 +1,9 @@
+package com.aiexploration.chat.model.mcp;
+
+import java.util.List;
+
+/**
+ * Published by McpServerManager when the tools of one server changed (empty list when the server was removed)
+ */
+public record McpToolsChangedEvent(String serverId, List<McpTool> tools) {
+}
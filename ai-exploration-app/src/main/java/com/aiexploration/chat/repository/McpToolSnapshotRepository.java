@@ -0,0 +1,9 @@
+package com.aiexploration.chat.repository;
+
+import com.aiexploration.chat.model.McpToolSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface McpToolSnapshotRepository extends JpaRepository<McpToolSnapshot, String> {
+}
@@ -0,0 +1,652 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpProgress;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.aiexploration.chat.model.mcp.McpTool;
+import com.aiexploration.chat.model.mcp.McpToolExecutionRequest;
+import com.aiexploration.chat.model.mcp.McpToolExecutionResponse;
+import com.aiexploration.chat.model.mcp.McpToolResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.NullNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Non-blocking MCP client.
+ * Every call returns a cold Mono/Flux, so many servers can be queried concurrently
+ * without parking a thread per request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpClient {
+
+    private static final String TOOLS_LIST_CHANGED = "notifications/tools/list_changed";
+    private static final Duration LISTEN_RECONNECT_DELAY = Duration.ofSeconds(1);
+
+    private final ObjectMapper objectMapper;
+    private final McpHttpTransport httpTransport;
+    private final McpStdioTransport stdioTransport;
+    private final McpWebSocketTransport webSocketTransport;
+    private final McpSessionManager sessionManager;
+    private final McpReplicaBalancer replicaBalancer;
+    private final McpMessageReader messageReader;
+    private final McpCodec codec;
+    private final McpConfig mcpConfig;
+
+    private final Sinks.Many<String> toolListChanges = Sinks.many().multicast().directBestEffort();
+    private final Map<String, Disposable> listeners = new ConcurrentHashMap<>();
+
+    // Request ids only have to be unique per client; a counter is much cheaper than UUID.randomUUID()
+    private final AtomicLong requestIds = new AtomicLong();
+
+    @PostConstruct
+    public void subscribeToChannelNotifications() {
+        Flux.merge(stdioTransport.notifications(), webSocketTransport.notifications())
+                .subscribe(notification -> handleServerNotification(notification.serverId(), notification.message()));
+    }
+
+    /**
+     * (Re-)initialize the connection: drops pooled sessions and opens a fresh one.
+     * Emits the initialize result (protocolVersion, capabilities, serverInfo).
+     */
+    public Mono<JsonNode> initialize(McpServerConfig serverConfig) {
+        return replicaBalancer.execute(serverConfig, target -> sessionManager.open(target, this::openSession))
+                .map(McpSessionManager.Session::initializeResult);
+    }
+
+    /**
+     * Liveness check: completes when the server answers ping
+     */
+    public Mono<Void> ping(McpServerConfig serverConfig) {
+        return request(serverConfig, "ping", Map.of()).then();
+    }
+
+    public Flux<McpTool> listTools(McpServerConfig serverConfig) {
+        return listTools(serverConfig, null).flatMapIterable(ToolList::tools);
+    }
+
+    /**
+     * Conditional tools/list: when etag is the version the server still has, it answers with
+     * notModified and no tools (see the weather server's tools/list _meta.etag / _meta.ifNoneMatch)
+     */
+    public Mono<ToolList> listTools(McpServerConfig serverConfig, String etag) {
+        Map<String, Object> params = etag != null ? Map.of("_meta", Map.of("ifNoneMatch", etag)) : Map.of();
+        return request(serverConfig, "tools/list", params)
+                .map(messageReader::tree)
+                .map(result -> {
+                    JsonNode meta = result.path("_meta");
+                    String version = meta.path("etag").asText(null);
+                    if (meta.path("notModified").asBoolean(false)) {
+                        log.debug("Tools of MCP server {} not modified (etag: {})", serverConfig.getName(), version);
+                        return new ToolList(List.of(), version, true);
+                    }
+
+                    List<McpTool> tools = new ArrayList<>();
+                    if (result.has("tools")) {
+                        for (JsonNode toolNode : result.get("tools")) {
+                            tools.add(toTool(serverConfig, toolNode));
+                        }
+                    } else {
+                        log.warn("No tools found in response");
+                    }
+
+                    log.info("Found {} tools from MCP server: {}", tools.size(), serverConfig.getName());
+                    return new ToolList(tools, version, false);
+                });
+    }
+
+    /**
+     * IDs of servers that reported notifications/tools/list_changed, on any stream
+     */
+    public Flux<String> toolListChanges() {
+        return toolListChanges.asFlux();
+    }
+
+    /**
+     * Call a tool. Never errors: failures are reported through {@link McpToolExecutionResponse#isSuccess()}.
+     */
+    public Mono<McpToolExecutionResponse> callTool(McpServerConfig serverConfig, McpToolExecutionRequest request) {
+        return callTool(serverConfig, request, null);
+    }
+
+    /**
+     * Call a tool, handing notifications/progress sent by the server to the listener while the call runs
+     */
+    public Mono<McpToolExecutionResponse> callTool(McpServerConfig serverConfig, McpToolExecutionRequest request,
+                                                   Consumer<McpProgress> progressListener) {
+        return Mono.defer(() -> {
+            log.info("Executing tool '{}' on MCP server: {}", request.getToolName(), serverConfig.getName());
+            long startTime = System.currentTimeMillis();
+
+            ObjectNode jsonRpcRequest = buildJsonRpcRequest("tools/call", Map.of(
+                    "name", request.getToolName(),
+                    "arguments", request.getArguments() != null ? request.getArguments() : Map.of()
+            ));
+
+            Consumer<JsonNode> notificationHandler = null;
+            if (progressListener != null) {
+                // Ask the server to report progress, using the request id as progress token
+                JsonNode progressToken = jsonRpcRequest.get("id");
+                ((ObjectNode) jsonRpcRequest.get("params")).putObject("_meta").set("progressToken", progressToken);
+                notificationHandler = notification -> handleProgress(
+                        serverConfig, request.getToolName(), progressToken, notification, progressListener);
+            }
+
+            return request(serverConfig, jsonRpcRequest, notificationHandler)
+                    .map(result -> {
+                        long executionTime = System.currentTimeMillis() - startTime;
+                        log.info("Tool '{}' executed successfully in {}ms", request.getToolName(), executionTime);
+
+                        return McpToolExecutionResponse.builder()
+                                .success(true)
+                                .content(toToolResult(result))
+                                .executionTimeMs(executionTime)
+                                .build();
+                    })
+                    .onErrorResume(e -> {
+                        long executionTime = System.currentTimeMillis() - startTime;
+                        if (e instanceof McpException) {
+                            log.error("Tool execution failed: {}", e.getMessage());
+                        } else {
+                            log.error("Failed to execute tool '{}' on MCP server: {}", request.getToolName(), serverConfig.getName(), e);
+                        }
+
+                        return Mono.just(failedResponse(e, executionTime));
+                    });
+        });
+    }
+
+    /**
+     * Call several tools on one server with a single JSON-RPC batch request.
+     * Responses are returned in the order of the requests; like callTool, failures never error the Mono.
+     * Items the server rejected as overloaded (retryable) are sent again in a smaller batch, after the longest
+     * delay the server asked for, up to mcp.request.max-retries times.
+     */
+    public Mono<List<McpToolExecutionResponse>> callTools(McpServerConfig serverConfig, List<McpToolExecutionRequest> requests) {
+        if (requests.size() == 1) {
+            return callTool(serverConfig, requests.get(0)).map(List::of);
+        }
+        return callTools(serverConfig, requests, 0);
+    }
+
+    private Mono<List<McpToolExecutionResponse>> callTools(McpServerConfig serverConfig, List<McpToolExecutionRequest> requests,
+                                                           int retries) {
+        return sendBatch(serverConfig, requests).flatMap(results -> {
+            List<Integer> retryable = new ArrayList<>();
+            Duration delay = Duration.ZERO;
+            for (int i = 0; i < results.size(); i++) {
+                Map<String, Object> metadata = results.get(i).getMetadata();
+                if (!results.get(i).isSuccess() && metadata != null && Boolean.TRUE.equals(metadata.get("retryable"))) {
+                    retryable.add(i);
+                    if (metadata.get("retryAfterMs") instanceof Number retryAfter
+                            && retryAfter.longValue() > delay.toMillis()) {
+                        delay = Duration.ofMillis(retryAfter.longValue());
+                    }
+                }
+            }
+            if (retryable.isEmpty() || retries >= mcpConfig.getRequest().getMaxRetries()) {
+                return Mono.just(results);
+            }
+
+            log.info("MCP server {} is overloaded, retrying {} of {} tools in {}ms",
+                    serverConfig.getName(), retryable.size(), results.size(), delay.toMillis());
+            List<McpToolExecutionRequest> again = retryable.stream().map(requests::get).toList();
+            return Mono.delay(delay)
+                    .then(callTools(serverConfig, again, retries + 1))
+                    .map(retried -> {
+                        List<McpToolExecutionResponse> merged = new ArrayList<>(results);
+                        for (int i = 0; i < retryable.size(); i++) {
+                            merged.set(retryable.get(i), retried.get(i));
+                        }
+                        return merged;
+                    });
+        });
+    }
+
+    private Mono<List<McpToolExecutionResponse>> sendBatch(McpServerConfig serverConfig, List<McpToolExecutionRequest> requests) {
+        return Mono.defer(() -> {
+            log.info("Executing batch of {} tools on MCP server: {}", requests.size(), serverConfig.getName());
+            long startTime = System.currentTimeMillis();
+
+            ArrayNode batch = objectMapper.createArrayNode();
+            List<String> ids = new ArrayList<>(requests.size());
+            for (McpToolExecutionRequest request : requests) {
+                ObjectNode jsonRpcRequest = buildJsonRpcRequest("tools/call", Map.of(
+                        "name", request.getToolName(),
+                        "arguments", request.getArguments() != null ? request.getArguments() : Map.of()
+                ));
+                ids.add(jsonRpcRequest.get("id").toString());
+                batch.add(jsonRpcRequest);
+            }
+
+            Set<String> pending = new HashSet<>(ids);
+            return replicaBalancer.execute(serverConfig, target -> sessionManager.execute(target, this::openSession, sessionId ->
+                            exchange(target, sessionId, null, batch)
+                                    .filter(message -> !message.has("method") && pending.contains(message.path("id").toString()))
+                                    .take(ids.size())
+                                    .collectMap(message -> message.path("id").toString())))
+                    .map(responses -> {
+                        long executionTime = System.currentTimeMillis() - startTime;
+                        List<McpToolExecutionResponse> results = new ArrayList<>(ids.size());
+                        for (int i = 0; i < ids.size(); i++) {
+                            JsonNode message = responses.get(ids.get(i));
+                            results.add(message != null
+                                    ? toExecutionResponse(message, executionTime)
+                                    : failedResponse("No response in batch for tool: " + requests.get(i).getToolName(), executionTime));
+                        }
+
+                        log.info("Batch of {} tools executed in {}ms", ids.size(), executionTime);
+                        return results;
+                    })
+                    .onErrorResume(e -> {
+                        long executionTime = System.currentTimeMillis() - startTime;
+                        log.error("Failed to execute tool batch on MCP server: {}", serverConfig.getName(), e);
+                        return Mono.just(requests.stream()
+                                .map(request -> failedResponse(e, executionTime))
+                                .toList());
+                    });
+        });
+    }
+
+    public void disconnect(McpServerConfig serverConfig) {
+        List<McpServerConfig> targets = new ArrayList<>();
+        targets.add(serverConfig);
+        targets.addAll(replicaBalancer.remove(serverConfig.getId()));
+
+        for (McpServerConfig target : targets) {
+            Disposable listener = listeners.remove(target.getId());
+            if (listener != null) {
+                listener.dispose();
+            }
+            sessionManager.remove(target.getId());
+            codec.remove(target.getId());
+            httpTransport.release(target.getId());
+            stdioTransport.release(target.getId());
+            webSocketTransport.release(target.getId());
+        }
+    }
+
+    private Mono<JsonNode> request(McpServerConfig serverConfig, String method, Object params) {
+        return Mono.defer(() -> request(serverConfig, buildJsonRpcRequest(method, params), null));
+    }
+
+    /**
+     * Send a JSON-RPC request on a pooled session (see {@link McpSessionManager}) of the best replica
+     * (see {@link McpReplicaBalancer}). An error the server marks as retryable (overloaded) is retried
+     * up to mcp.request.max-retries times after the delay it asks for.
+     */
+    private Mono<JsonNode> request(McpServerConfig serverConfig, ObjectNode request, Consumer<JsonNode> notificationHandler) {
+        return Mono.defer(() -> replicaBalancer.execute(serverConfig, target -> sessionManager.execute(target, this::openSession,
+                        sessionId -> send(target, sessionId, null, request, notificationHandler))))
+                .retryWhen(retryOverloaded(serverConfig));
+    }
+
+    private Retry retryOverloaded(McpServerConfig serverConfig) {
+        int maxRetries = mcpConfig.getRequest().getMaxRetries();
+        return Retry.from(signals -> signals.concatMap(signal -> {
+            if (!(signal.failure() instanceof McpException e) || !e.isRetryable() || signal.totalRetries() >= maxRetries) {
+                return Mono.error(signal.failure());
+            }
+            Duration delay = e.getRetryAfter() != null ? e.getRetryAfter() : Duration.ZERO;
+            log.info("MCP server {} is overloaded, retrying in {}ms: {}", serverConfig.getName(), delay.toMillis(), e.getMessage());
+            return Mono.delay(delay);
+        }));
+    }
+
+    /**
+     * Send initialize without a session and return the session issued by the server
+     */
+    private Mono<McpSessionManager.Session> openSession(McpServerConfig serverConfig) {
+        return Mono.defer(() -> {
+            log.info("Initializing connection to MCP server: {}", serverConfig.getName());
+
+            ObjectNode request = buildJsonRpcRequest("initialize", Map.of(
+                    "protocolVersion", "2024-11-05",
+                    "capabilities", Map.of(),
+                    "clientInfo", Map.of(
+                            "name", "ai-exploration",
+                            "version", "1.0.0"
+                    )
+            ));
+
+            AtomicReference<String> issuedSessionId = new AtomicReference<>();
+            return send(serverConfig, null, issuedSessionId, request, null).map(messageReader::tree).map(result -> {
+                String sessionId = issuedSessionId.get();
+                if (sessionId != null) {
+                    serverConfig.setSessionId(sessionId);
+                    log.info("Received MCP session ID: {}", sessionId);
+                } else if (serverConfig.getTransport() == McpServerConfig.Transport.HTTP) {
+                    log.warn("No MCP-Session-Id header in initialization response");
+                }
+
+                boolean listChanged = result.path("capabilities").path("tools").path("listChanged").asBoolean(false);
+                logicalServer(serverConfig).setToolsListChanged(listChanged);
+                if (listChanged && sessionId != null) {
+                    listen(serverConfig, sessionId);
+                }
+
+                log.info("Successfully initialized connection to MCP server: {}", serverConfig.getName());
+                return new McpSessionManager.Session(sessionId, result);
+            });
+        });
+    }
+
+    /**
+     * Send a JSON-RPC request and emit its result, or McpException if the server answered with an error.
+     * Responses are correlated by id (its JSON text, so the id type must match as JSON-RPC requires);
+     * notifications arriving on the same stream go to the notification handler.
+     */
+    private Mono<JsonNode> send(McpServerConfig serverConfig, String sessionId, AtomicReference<String> issuedSessionId,
+                                ObjectNode request, Consumer<JsonNode> notificationHandler) {
+        String id = request.get("id").toString();
+
+        return exchange(serverConfig, sessionId, issuedSessionId, request)
+                .filter(message -> {
+                    if (message.has("method")) {
+                        if (!message.has("id") && notificationHandler != null
+                                && !TOOLS_LIST_CHANGED.equals(message.get("method").asText())) {
+                            notificationHandler.accept(message);
+                        } else {
+                            handleServerNotification(logicalServer(serverConfig).getId(), message);
+                        }
+                        return false;
+                    }
+                    return id.equals(message.path("id").toString());
+                })
+                .next()
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("No JSON-RPC response for request " + id)))
+                .map(this::extractResult);
+    }
+
+    /**
+     * Send a JSON-RPC message (or batch) and emit every JSON-RPC message of the response as it arrives.
+     * Batch responses are unwrapped, so a plain JSON response yields one message per batch item
+     * and a text/event-stream yields them event by event.
+     */
+    private Flux<JsonNode> exchange(McpServerConfig serverConfig, String sessionId,
+                                    AtomicReference<String> issuedSessionId, JsonNode request) {
+        if (serverConfig.getTransport() == McpServerConfig.Transport.STDIO) {
+            return stdioTransport.exchange(serverConfig, request);
+        }
+        if (serverConfig.getTransport() == McpServerConfig.Transport.WEBSOCKET) {
+            return webSocketTransport.exchange(serverConfig, request);
+        }
+
+        McpServerConfig.Encoding encoding = codec.encodingFor(serverConfig);
+        MediaType bodyType = McpCodec.mediaType(encoding);
+
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(bodyType);
+
+        // Accept both application/json and text/event-stream as required by MCP servers,
+        // preferring the binary encoding of the request when one is used
+        headers.setAccept(encoding == McpServerConfig.Encoding.JSON
+                ? Arrays.asList(MediaType.APPLICATION_JSON, MediaType.TEXT_EVENT_STREAM)
+                : Arrays.asList(bodyType, MediaType.APPLICATION_JSON, MediaType.TEXT_EVENT_STREAM));
+
+        // Add MCP session ID header if available
+        if (sessionId != null && !sessionId.isEmpty()) {
+            headers.add("Mcp-Session-Id", sessionId);
+            log.debug("Adding Mcp-Session-Id header: {}", sessionId);
+        }
+
+        // Add custom headers (e.g., Authorization)
+        if (serverConfig.getHeaders() != null) {
+            serverConfig.getHeaders().forEach(headers::add);
+        }
+
+        log.debug("Sending JSON-RPC request to {} as {}: {}", serverConfig.getUrl(), encoding, request);
+        byte[] requestBody = codec.encode(request, encoding);
+
+        return httpTransport.exchange(serverConfig, headers, requestBody, response -> {
+            // A server that does not speak the binary encoding: fall back to JSON and resend
+            if (response.statusCode().value() == HttpStatus.UNSUPPORTED_MEDIA_TYPE.value()
+                    && encoding != McpServerConfig.Encoding.JSON) {
+                codec.rejected(serverConfig, encoding);
+                return response.releaseBody()
+                        .thenMany(Flux.defer(() -> exchange(serverConfig, sessionId, issuedSessionId, request)));
+            }
+
+            if (response.statusCode().isError()) {
+                return response.createException().flatMapMany(e -> Flux.<JsonNode>error(e));
+            }
+
+            // Extract session ID from initialization response headers
+            if (issuedSessionId != null) {
+                String issued = response.headers().asHttpHeaders().getFirst("Mcp-Session-Id");
+                if (issued != null && !issued.isEmpty()) {
+                    issuedSessionId.set(issued);
+                }
+            }
+
+            MediaType contentType = response.headers().contentType().orElse(MediaType.APPLICATION_JSON);
+            log.debug("Received response with Content-Type: {}", contentType);
+
+            if (contentType.includes(MediaType.TEXT_EVENT_STREAM)) {
+                return readEventStream(response);
+            }
+
+            McpServerConfig.Encoding responseEncoding = McpCodec.binaryEncoding(contentType);
+            if (responseEncoding != null) {
+                return response.bodyToMono(byte[].class)
+                        .map(body -> codec.decode(body, responseEncoding))
+                        .flatMapIterable(McpClient::unwrapBatch);
+            }
+
+            return response.bodyToMono(String.class)
+                    .map(this::readMessage)
+                    .flatMapIterable(McpClient::unwrapBatch);
+        });
+    }
+
+    /**
+     * Keep a GET stream open on the session so the server can push notifications (streamable HTTP).
+     * The stream is reopened when it ends; an HTTP error (e.g. 405 from servers without GET support,
+     * 404 for an expired session) stops it until the next session is opened.
+     */
+    private void listen(McpServerConfig serverConfig, String sessionId) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(List.of(MediaType.TEXT_EVENT_STREAM));
+        headers.add("Mcp-Session-Id", sessionId);
+        if (serverConfig.getHeaders() != null) {
+            serverConfig.getHeaders().forEach(headers::add);
+        }
+
+        Disposable listener = httpTransport.listen(serverConfig, headers, response -> {
+                    if (response.statusCode().isError()) {
+                        return response.createException().flatMapMany(e -> Flux.<JsonNode>error(e));
+                    }
+                    return readEventStream(response);
+                })
+                .repeatWhen(completed -> completed.delayElements(LISTEN_RECONNECT_DELAY))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, LISTEN_RECONNECT_DELAY)
+                        .maxBackoff(Duration.ofMinutes(1))
+                        .filter(e -> !(e instanceof WebClientResponseException)))
+                .subscribe(
+                        message -> handleServerNotification(logicalServer(serverConfig).getId(), message),
+                        e -> log.info("Notification stream of MCP server {} closed: {}", serverConfig.getName(), e.getMessage())
+                );
+
+        Disposable previous = listeners.put(serverConfig.getId(), listener);
+        if (previous != null) {
+            previous.dispose();
+        }
+        log.info("Listening for notifications from MCP server: {}", serverConfig.getName());
+    }
+
+    /**
+     * The server a replica view belongs to; the server itself when it is not a replica
+     */
+    private static McpServerConfig logicalServer(McpServerConfig serverConfig) {
+        return serverConfig.getGroup() != null ? serverConfig.getGroup() : serverConfig;
+    }
+
+    private void handleServerNotification(String serverId, JsonNode message) {
+        String method = message.path("method").asText();
+        if (TOOLS_LIST_CHANGED.equals(method)) {
+            log.info("Tool list of MCP server {} changed", serverId);
+            toolListChanges.emitNext(serverId, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        } else {
+            log.debug("Ignoring server message: {}", method);
+        }
+    }
+
+    private Flux<JsonNode> readEventStream(ClientResponse response) {
+        return SseEventReader.read(response.bodyToFlux(DataBuffer.class))
+                .filter(event -> "message".equals(event.event()))
+                .map(event -> readMessage(event.data()))
+                .flatMapIterable(McpClient::unwrapBatch);
+    }
+
+    private static Iterable<JsonNode> unwrapBatch(JsonNode message) {
+        return message.isArray() ? message : List.of(message);
+    }
+
+    private JsonNode readMessage(String data) {
+        log.debug("Received JSON-RPC message: {}", data);
+        try {
+            return messageReader.read(data);
+        } catch (Exception e) {
+            throw new IllegalStateException("Invalid JSON-RPC message: " + e.getMessage(), e);
+        }
+    }
+
+    private JsonNode extractResult(JsonNode jsonResponse) {
+        if (jsonResponse.has("error")) {
+            JsonNode error = jsonResponse.get("error");
+            throw new McpException(
+                    error.path("code").asInt(-32603),
+                    error.has("message") ? error.get("message").asText() : "Unknown error",
+                    error.get("data")
+            );
+        }
+
+        JsonNode result = jsonResponse.get("result");
+        return result != null ? result : NullNode.getInstance();
+    }
+
+    /**
+     * Tool results stay raw JSON, with the text for the model already taken while reading (see {@link McpMessageReader})
+     */
+    private McpToolResult toToolResult(JsonNode result) {
+        if (result.isNull()) {
+            return null;
+        }
+        McpToolResult toolResult = McpMessageReader.toolResult(result);
+        codec.record(toolResult.getJson());
+        return toolResult;
+    }
+
+    private McpToolExecutionResponse toExecutionResponse(JsonNode message, long executionTime) {
+        try {
+            JsonNode result = extractResult(message);
+            return McpToolExecutionResponse.builder()
+                    .success(true)
+                    .content(toToolResult(result))
+                    .executionTimeMs(executionTime)
+                    .build();
+        } catch (McpException e) {
+            log.error("Tool execution failed: {}", e.getMessage());
+            return failedResponse(e, executionTime);
+        }
+    }
+
+    /**
+     * Failed response for an error; a server's retry hint is kept in the metadata
+     * (retryable, retryAfterMs) so callers can back off
+     */
+    private McpToolExecutionResponse failedResponse(Throwable e, long executionTime) {
+        McpToolExecutionResponse response = failedResponse(e.getMessage(), executionTime);
+        if (e instanceof McpException mcpException && mcpException.isRetryable()) {
+            Map<String, Object> metadata = new LinkedHashMap<>();
+            metadata.put("retryable", true);
+            Duration retryAfter = mcpException.getRetryAfter();
+            if (retryAfter != null) {
+                metadata.put("retryAfterMs", retryAfter.toMillis());
+            }
+            response.setMetadata(metadata);
+        }
+        return response;
+    }
+
+    private McpToolExecutionResponse failedResponse(String error, long executionTime) {
+        return McpToolExecutionResponse.builder()
+                .success(false)
+                .error(error)
+                .executionTimeMs(executionTime)
+                .build();
+    }
+
+    private void handleProgress(McpServerConfig serverConfig, String toolName, JsonNode progressToken,
+                                JsonNode notification, Consumer<McpProgress> progressListener) {
+        JsonNode params = notification.path("params");
+        if (!"notifications/progress".equals(notification.path("method").asText())
+                || !progressToken.toString().equals(params.path("progressToken").toString())) {
+            log.debug("Ignoring notification: {}", notification.path("method").asText());
+            return;
+        }
+
+        progressListener.accept(McpProgress.builder()
+                .serverId(serverConfig.getId())
+                .toolName(toolName)
+                .progressToken(progressToken.asText())
+                .progress(params.path("progress").asDouble())
+                .total(params.has("total") ? params.get("total").asDouble() : null)
+                .message(params.has("message") ? params.get("message").asText() : null)
+                .build());
+    }
+
+    private McpTool toTool(McpServerConfig serverConfig, JsonNode toolNode) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> inputSchema = toolNode.has("inputSchema") ?
+                objectMapper.convertValue(toolNode.get("inputSchema"), Map.class) :
+                new HashMap<>();
+
+        return McpTool.builder()
+                .name(toolNode.has("name") ? toolNode.get("name").asText() : "")
+                .description(toolNode.has("description") ? toolNode.get("description").asText() : "")
+                .inputSchema(inputSchema)
+                .serverId(serverConfig.getId())
+                .build();
+    }
+
+    /**
+     * Result of a conditional tools/list; tools is empty when notModified
+     */
+    public record ToolList(List<McpTool> tools, String etag, boolean notModified) {
+    }
+
+    private ObjectNode buildJsonRpcRequest(String method, Object params) {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.put("jsonrpc", "2.0");
+        request.put("id", requestIds.incrementAndGet());
+        request.put("method", method);
+        request.set("params", objectMapper.valueToTree(params));
+        return request;
+    }
+}
@@ -0,0 +1,194 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpEncodingStats;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Wire encoding of MCP HTTP messages. JSON is the interoperable default; CBOR and Smile are binary
+ * Jackson formats understood by our own MCP servers, chosen per server (McpServerConfig.encoding or
+ * mcp.encoding) and negotiated via Content-Type/Accept. A server that rejects a binary body with 415
+ * is remembered and spoken to in JSON from then on.
+ * Recent tool results are kept as samples for {@link #compare(List)}.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpCodec {
+
+    public static final MediaType APPLICATION_SMILE = new MediaType("application", "x-jackson-smile");
+
+    private static final int MAX_SAMPLES = 32;
+    private static final int COMPARISON_ROUNDS = 50;
+
+    private final ObjectMapper objectMapper;
+    private final McpConfig mcpConfig;
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private final ObjectMapper smileMapper = new SmileMapper();
+    private final Set<String> jsonOnly = ConcurrentHashMap.newKeySet();
+    private final Deque<String> samples = new ArrayDeque<>();
+
+    /**
+     * Encoding to use for the server's request bodies
+     */
+    public McpServerConfig.Encoding encodingFor(McpServerConfig serverConfig) {
+        if (jsonOnly.contains(serverConfig.getId())) {
+            return McpServerConfig.Encoding.JSON;
+        }
+        return serverConfig.getEncoding() != null ? serverConfig.getEncoding() : mcpConfig.getEncoding();
+    }
+
+    /**
+     * The server does not accept the binary encoding, use JSON for it
+     */
+    public void rejected(McpServerConfig serverConfig, McpServerConfig.Encoding encoding) {
+        if (jsonOnly.add(serverConfig.getId())) {
+            log.info("MCP server {} does not accept {}, falling back to JSON", serverConfig.getName(), encoding);
+        }
+    }
+
+    public void remove(String serverId) {
+        jsonOnly.remove(serverId);
+    }
+
+    public static MediaType mediaType(McpServerConfig.Encoding encoding) {
+        return switch (encoding) {
+            case JSON -> MediaType.APPLICATION_JSON;
+            case CBOR -> MediaType.APPLICATION_CBOR;
+            case SMILE -> APPLICATION_SMILE;
+        };
+    }
+
+    /**
+     * Binary encoding of a response Content-Type, null for JSON and anything else
+     */
+    public static McpServerConfig.Encoding binaryEncoding(MediaType contentType) {
+        if (MediaType.APPLICATION_CBOR.isCompatibleWith(contentType)) {
+            return McpServerConfig.Encoding.CBOR;
+        }
+        if (APPLICATION_SMILE.isCompatibleWith(contentType)) {
+            return McpServerConfig.Encoding.SMILE;
+        }
+        return null;
+    }
+
+    public byte[] encode(JsonNode message, McpServerConfig.Encoding encoding) {
+        try {
+            return mapper(encoding).writeValueAsBytes(message);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode JSON-RPC message as " + encoding, e);
+        }
+    }
+
+    public JsonNode decode(byte[] body, McpServerConfig.Encoding encoding) {
+        try {
+            return mapper(encoding).readTree(body);
+        } catch (IOException e) {
+            throw new IllegalStateException("Invalid " + encoding + " JSON-RPC message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Keep a tool result (JSON text) as a sample payload for the comparison
+     */
+    public void record(String toolResult) {
+        synchronized (samples) {
+            if (samples.size() == MAX_SAMPLES) {
+                samples.removeFirst();
+            }
+            samples.addLast(toolResult);
+        }
+    }
+
+    public List<String> getSamples() {
+        synchronized (samples) {
+            return new ArrayList<>(samples);
+        }
+    }
+
+    /**
+     * Encoded size and encode/decode time of the payloads (JSON texts) in every encoding
+     */
+    public List<McpEncodingStats> compare(List<String> payloads) {
+        List<JsonNode> trees = new ArrayList<>();
+        for (String payload : payloads) {
+            try {
+                trees.add(objectMapper.readTree(payload));
+            } catch (IOException e) {
+                log.debug("Skipping invalid payload in encoding comparison: {}", e.getMessage());
+            }
+        }
+
+        List<McpEncodingStats> stats = new ArrayList<>();
+        long jsonBytes = 0;
+        for (McpServerConfig.Encoding encoding : McpServerConfig.Encoding.values()) {
+            List<byte[]> encoded = new ArrayList<>(trees.size());
+            long totalBytes = 0;
+            for (JsonNode tree : trees) {
+                byte[] bytes = encode(tree, encoding);
+                encoded.add(bytes);
+                totalBytes += bytes.length;
+            }
+            if (encoding == McpServerConfig.Encoding.JSON) {
+                jsonBytes = totalBytes;
+            }
+
+            // One untimed round to warm up, then the average of the timed rounds
+            long encodeNanos = 0;
+            long decodeNanos = 0;
+            for (int round = 0; round <= COMPARISON_ROUNDS; round++) {
+                long start = System.nanoTime();
+                for (JsonNode tree : trees) {
+                    encode(tree, encoding);
+                }
+                long middle = System.nanoTime();
+                for (byte[] bytes : encoded) {
+                    decode(bytes, encoding);
+                }
+                if (round > 0) {
+                    encodeNanos += middle - start;
+                    decodeNanos += System.nanoTime() - middle;
+                }
+            }
+
+            double perPayload = (double) COMPARISON_ROUNDS * Math.max(trees.size(), 1);
+            stats.add(McpEncodingStats.builder()
+                    .encoding(encoding)
+                    .payloads(trees.size())
+                    .totalBytes(totalBytes)
+                    .sizeRatio(jsonBytes > 0 ? (double) totalBytes / jsonBytes : 1.0)
+                    .encodeMicros(encodeNanos / perPayload / 1000.0)
+                    .decodeMicros(decodeNanos / perPayload / 1000.0)
+                    .decodeMegabytesPerSecond(decodeNanos > 0
+                            ? totalBytes * (double) COMPARISON_ROUNDS / decodeNanos * 1000.0
+                            : 0)
+                    .build());
+        }
+        return stats;
+    }
+
+    private ObjectMapper mapper(McpServerConfig.Encoding encoding) {
+        return switch (encoding) {
+            case JSON -> objectMapper;
+            case CBOR -> cborMapper;
+            case SMILE -> smileMapper;
+        };
+    }
+}
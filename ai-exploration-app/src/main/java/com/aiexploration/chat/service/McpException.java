@@ -0,0 +1,43 @@
+package com.aiexploration.chat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * JSON-RPC error returned by an MCP server, with its optional data
+ * (our servers put {retryable, retryAfterMs} there when they are overloaded)
+ */
+@Getter
+public class McpException extends RuntimeException {
+
+    private final int code;
+    private final JsonNode data;
+
+    public McpException(int code, String message) {
+        this(code, message, null);
+    }
+
+    public McpException(int code, String message, JsonNode data) {
+        super(message);
+        this.code = code;
+        this.data = data;
+    }
+
+    /**
+     * The server asked for the request to be repeated later
+     */
+    public boolean isRetryable() {
+        return data != null && data.path("retryable").asBoolean(false);
+    }
+
+    /**
+     * Delay the server asked for before a retry, null if it gave none
+     */
+    public Duration getRetryAfter() {
+        return data != null && data.hasNonNull("retryAfterMs")
+                ? Duration.ofMillis(Math.max(0, data.get("retryAfterMs").asLong()))
+                : null;
+    }
+}
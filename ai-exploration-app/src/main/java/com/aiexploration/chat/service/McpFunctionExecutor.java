@@ -1,44 +1,51 @@
 package com.aiexploration.chat.service;
 
 import com.aiexploration.chat.model.ToolCallInfo;
+import com.aiexploration.chat.model.mcp.McpProgress;
 import com.aiexploration.chat.model.mcp.McpServerConfig;
 import com.aiexploration.chat.model.mcp.McpTool;
 import com.aiexploration.chat.model.mcp.McpToolExecutionRequest;
 import com.aiexploration.chat.model.mcp.McpToolExecutionResponse;
+import com.aiexploration.chat.model.mcp.McpToolRendering;
+import com.aiexploration.chat.model.mcp.McpToolsChangedEvent;
 import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.github.sashirestela.openai.common.tool.Tool;
 import io.github.sashirestela.openai.common.tool.ToolCall;
 import io.github.sashirestela.openai.common.tool.ToolType;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 @Service
 @Slf4j
 public class McpFunctionExecutor {
 
-    private final McpClientService mcpClientService;
+    private final McpClient mcpClient;
     private final McpServerManager mcpServerManager;
     private final ObjectMapper objectMapper;
+    private final McpToolRenderer toolRenderer;
 
     private final Map<String, McpTool> toolsRegistry = new ConcurrentHashMap<>();
 
     public McpFunctionExecutor(
-            McpClientService mcpClientService,
+            McpClient mcpClient,
             McpServerManager mcpServerManager,
-            ObjectMapper objectMapper
+            ObjectMapper objectMapper,
+            McpToolRenderer toolRenderer
     ) {
-        this.mcpClientService = mcpClientService;
+        this.mcpClient = mcpClient;
         this.mcpServerManager = mcpServerManager;
         this.objectMapper = objectMapper;
+        this.toolRenderer = toolRenderer;
     }
 
     @PostConstruct
@@ -48,7 +55,7 @@ public class McpFunctionExecutor {
 
     private void loadAllTools() {
         try {
-            List<McpTool> tools = mcpServerManager.getAllTools();
+            List<McpTool> tools = mcpServerManager.getRegisteredTools();
             tools.forEach(tool -> toolsRegistry.put(tool.getName(), tool));
             log.info("Loaded {} MCP tools for function calling", tools.size());
             tools.forEach(tool -> log.debug("  - {}: {}", tool.getName(), tool.getDescription()));
@@ -58,7 +65,8 @@ public class McpFunctionExecutor {
     }
 
     /**
-     * Get tool functions in OpenAI format for ChatRequest
+     * Get tool functions in OpenAI format for ChatRequest, rendered per mcp.schema.rendering
+     * (see {@link McpToolRenderer}). Tools of servers whose circuit is open are not advertised.
      */
     public List<Tool> getToolFunctions() {
         if (toolsRegistry.isEmpty()) {
@@ -66,22 +74,47 @@ public class McpFunctionExecutor {
             loadAllTools();
         }
 
-        return toolsRegistry.values().stream()
+        List<McpToolRenderer.RenderedTool> rendered = toolsRegistry.values().stream()
+                .filter(tool -> mcpServerManager.isAvailable(tool.getServerId()))
+                .map(toolRenderer::render)
+                .toList();
+
+        log.debug("Tool definitions: {} tools, ~{} tokens ({})", rendered.size(),
+                rendered.stream().mapToInt(McpToolRenderer.RenderedTool::tokens).sum(),
+                toolRenderer.isCompact() ? "compact" : "verbatim");
+
+        return rendered.stream()
                 .map(this::convertToToolFunction)
                 .collect(Collectors.toList());
     }
 
     /**
-     * Convert MCP tool to OpenAI Tool object
+     * Estimated token cost of every registered tool, verbatim and compact
      */
-    private Tool convertToToolFunction(McpTool tool) {
-        // Convert Map to JsonNode for the parameters
-        JsonNode parametersNode = objectMapper.valueToTree(tool.getInputSchema());
+    public List<McpToolRendering> getRenderingReport() {
+        return toolsRegistry.values().stream()
+                .map(tool -> {
+                    McpToolRenderer.RenderedTool compact = toolRenderer.compact(tool);
+                    return McpToolRendering.builder()
+                            .name(tool.getName())
+                            .serverId(tool.getServerId())
+                            .verbatimTokens(toolRenderer.verbatim(tool).tokens())
+                            .compactTokens(compact.tokens())
+                            .compactDescription(compact.description())
+                            .build();
+                })
+                .sorted(Comparator.comparing(McpToolRendering::getName))
+                .collect(Collectors.toList());
+    }
 
+    /**
+     * Convert a rendered MCP tool to OpenAI Tool object
+     */
+    private Tool convertToToolFunction(McpToolRenderer.RenderedTool tool) {
         var functionDef = new Tool.ToolFunctionDef(
-                tool.getName(),
-                tool.getDescription(),
-                parametersNode,
+                tool.name(),
+                tool.description(),
+                tool.parameters(),
                 null  // strict parameter (optional)
         );
 
@@ -92,92 +125,195 @@ public class McpFunctionExecutor {
      * Execute a single tool call
      */
     public ToolCallInfo executeTool(ToolCall toolCall) {
-        long startTime = System.currentTimeMillis();
+        return executeToolAsync(toolCall).block();
+    }
+
+    /**
+     * Execute a single tool call without blocking. Never errors: failures end up in ToolCallInfo.
+     */
+    public Mono<ToolCallInfo> executeToolAsync(ToolCall toolCall) {
+        return Mono.defer(() -> {
+            long startTime = System.currentTimeMillis();
+
+            PreparedCall call;
+            try {
+                call = prepare(toolCall);
+            } catch (Exception e) {
+                return Mono.just(failedCall(toolCall, startTime, e));
+            }
+
+            return mcpClient.callTool(call.server(), call.request(), progressListener(call))
+                    .map(response -> toToolCallInfo(call, response, startTime));
+        });
+    }
+
+    /**
+     * Execute all tool calls concurrently, results are returned in the order of the tool calls
+     */
+    public List<ToolCallInfo> executeAll(List<ToolCall> toolCalls) {
+        if (toolCalls == null || toolCalls.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        log.info("Executing {} tool calls", toolCalls.size());
+
+        List<ToolCallInfo> results = executeAllAsync(toolCalls).collectList().block();
+        return results != null ? results : Collections.emptyList();
+    }
+
+    /**
+     * Execute all tool calls without blocking, emitting results in the order of the tool calls.
+     * Calls are grouped per server: each server receives one JSON-RPC batch, servers are called concurrently.
+     */
+    public Flux<ToolCallInfo> executeAllAsync(List<ToolCall> toolCalls) {
+        if (toolCalls == null || toolCalls.isEmpty()) {
+            return Flux.empty();
+        }
+
+        return Mono.defer(() -> {
+            long startTime = System.currentTimeMillis();
+            ToolCallInfo[] results = new ToolCallInfo[toolCalls.size()];
+            List<PreparedCall> calls = new ArrayList<>(toolCalls.size());
+            Map<String, List<Integer>> callsByServer = new LinkedHashMap<>();
 
+            for (int i = 0; i < toolCalls.size(); i++) {
+                try {
+                    PreparedCall call = prepare(toolCalls.get(i));
+                    calls.add(call);
+                    callsByServer.computeIfAbsent(call.server().getId(), id -> new ArrayList<>()).add(i);
+                } catch (Exception e) {
+                    calls.add(null);
+                    results[i] = failedCall(toolCalls.get(i), startTime, e);
+                }
+            }
+
+            return Flux.fromIterable(callsByServer.values())
+                    .flatMap(indexes -> {
+                        PreparedCall first = calls.get(indexes.get(0));
+                        Mono<List<McpToolExecutionResponse>> responses = indexes.size() == 1
+                                ? mcpClient.callTool(first.server(), first.request(), progressListener(first)).map(List::of)
+                                : mcpClient.callTools(first.server(), indexes.stream().map(i -> calls.get(i).request()).toList());
+
+                        return responses.doOnNext(list -> {
+                            for (int k = 0; k < indexes.size(); k++) {
+                                int index = indexes.get(k);
+                                results[index] = toToolCallInfo(calls.get(index), list.get(k), startTime);
+                            }
+                        });
+                    })
+                    .then(Mono.fromSupplier(() -> Arrays.asList(results)));
+        }).flatMapIterable(list -> list);
+    }
+
+    /**
+     * Resolve tool, server and arguments of a tool call
+     */
+    private PreparedCall prepare(ToolCall toolCall) throws Exception {
         String toolName = toolCall.getFunction().getName();
         String argumentsJson = toolCall.getFunction().getArguments();
 
         log.info("Executing tool call: {} with arguments: {}", toolName, argumentsJson);
 
-        try {
-            // Parse arguments from JSON string
-            Map<String, Object> arguments = objectMapper.readValue(
-                    argumentsJson,
-                    new TypeReference<Map<String, Object>>() {}
-            );
-
-            // Get tool from registry
-            McpTool tool = toolsRegistry.get(toolName);
-            if (tool == null) {
-                throw new RuntimeException("Tool not found: " + toolName);
-            }
+        // Parse arguments from JSON string
+        Map<String, Object> arguments = objectMapper.readValue(
+                argumentsJson,
+                new TypeReference<Map<String, Object>>() {}
+        );
 
-            // Get server for this tool
-            McpServerConfig server = mcpServerManager.getServer(tool.getServerId());
-            if (server == null) {
-                throw new RuntimeException("Server not found for tool: " + tool.getServerId());
-            }
+        // Get tool from registry
+        McpTool tool = toolsRegistry.get(toolName);
+        if (tool == null) {
+            throw new RuntimeException("Tool not found: " + toolName);
+        }
 
-            // Execute via MCP client
-            McpToolExecutionRequest request = McpToolExecutionRequest.builder()
-                    .serverId(tool.getServerId())
-                    .toolName(toolName)
-                    .arguments(arguments)
-                    .build();
+        // Get server for this tool
+        McpServerConfig server = mcpServerManager.getServer(tool.getServerId());
+        if (server == null) {
+            throw new RuntimeException("Server not found for tool: " + tool.getServerId());
+        }
 
-            McpToolExecutionResponse response = mcpClientService.executeTool(server, request);
+        if (!mcpServerManager.isAvailable(server.getId())) {
+            throw new RuntimeException("Server is unavailable (circuit open): " + server.getName());
+        }
 
-            long executionTime = System.currentTimeMillis() - startTime;
+        McpToolExecutionRequest request = McpToolExecutionRequest.builder()
+                .serverId(tool.getServerId())
+                .toolName(toolName)
+                .arguments(arguments)
+                .build();
 
-            log.info("Tool {} execution completed in {}ms, success: {}",
-                    toolName, executionTime, response.isSuccess());
+        return new PreparedCall(toolCall, server, request);
+    }
 
-            return ToolCallInfo.builder()
-                    .toolCallId(toolCall.getId())
-                    .toolName(toolName)
-                    .arguments(arguments)
-                    .result(response.getContent())
-                    .executionTimeMs(executionTime)
-                    .success(response.isSuccess())
-                    .error(response.getError())
-                    .build();
+    private Consumer<McpProgress> progressListener(PreparedCall call) {
+        String toolName = call.request().getToolName();
+        return progress -> log.info("Tool {} progress: {}{}{}", toolName, progress.getProgress(),
+                progress.getTotal() != null ? "/" + progress.getTotal() : "",
+                progress.getMessage() != null ? " - " + progress.getMessage() : "");
+    }
 
-        } catch (Exception e) {
-            long executionTime = System.currentTimeMillis() - startTime;
-            log.error("Tool execution failed: {}", toolName, e);
-
-            return ToolCallInfo.builder()
-                    .toolCallId(toolCall.getId())
-                    .toolName(toolName)
-                    .executionTimeMs(executionTime)
-                    .success(false)
-                    .error(e.getMessage())
-                    .build();
-        }
+    private ToolCallInfo toToolCallInfo(PreparedCall call, McpToolExecutionResponse response, long startTime) {
+        long executionTime = System.currentTimeMillis() - startTime;
+        String toolName = call.request().getToolName();
+
+        log.info("Tool {} execution completed in {}ms, success: {}",
+                toolName, executionTime, response.isSuccess());
+
+        return ToolCallInfo.builder()
+                .toolCallId(call.toolCall().getId())
+                .toolName(toolName)
+                .arguments(call.request().getArguments())
+                .result(response.getContent())
+                .executionTimeMs(executionTime)
+                .success(response.isSuccess())
+                .error(describeError(response))
+                .build();
     }
 
     /**
-     * Execute all tool calls (can be parallelized in the future)
+     * Error text of a failed call; a server that is still overloaded after our retries says when to try again
      */
-    public List<ToolCallInfo> executeAll(List<ToolCall> toolCalls) {
-        if (toolCalls == null || toolCalls.isEmpty()) {
-            return Collections.emptyList();
+    private static String describeError(McpToolExecutionResponse response) {
+        Map<String, Object> metadata = response.getMetadata();
+        if (response.getError() == null || metadata == null || !(metadata.get("retryAfterMs") instanceof Long retryAfterMs)) {
+            return response.getError();
         }
+        return response.getError() + " (server overloaded, retry after " + retryAfterMs + "ms)";
+    }
 
-        log.info("Executing {} tool calls", toolCalls.size());
+    private ToolCallInfo failedCall(ToolCall toolCall, long startTime, Exception e) {
+        long executionTime = System.currentTimeMillis() - startTime;
+        log.error("Tool execution failed: {}", toolCall.getFunction().getName(), e);
 
-        // Sequential execution (can be made parallel with CompletableFuture.allOf)
-        return toolCalls.stream()
-                .map(this::executeTool)
-                .collect(Collectors.toList());
+        return ToolCallInfo.builder()
+                .toolCallId(toolCall.getId())
+                .toolName(toolCall.getFunction().getName())
+                .executionTimeMs(executionTime)
+                .success(false)
+                .error(e.getMessage())
+                .build();
+    }
+
+    private record PreparedCall(ToolCall toolCall, McpServerConfig server, McpToolExecutionRequest request) {
+    }
+
+    /**
+     * Replace the registry entries of the one server whose tools changed
+     */
+    @EventListener
+    public void onToolsChanged(McpToolsChangedEvent event) {
+        toolsRegistry.values().removeIf(tool -> event.serverId().equals(tool.getServerId()));
+        event.tools().forEach(tool -> toolsRegistry.put(tool.getName(), tool));
+        log.info("Updated {} MCP tools of server {} in the function calling registry", event.tools().size(), event.serverId());
     }
 
     /**
-     * Refresh tools registry
+     * Refresh tools registry. Servers are re-listed conditionally, only those whose tools changed
+     * are rebuilt (through {@link #onToolsChanged}).
      */
     public void refreshTools() {
         log.info("Refreshing MCP tools registry");
-        toolsRegistry.clear();
-        loadAllTools();
+        mcpServerManager.getAllServers()
+                .forEach(server -> mcpServerManager.refreshServerTools(server.getId()));
     }
 }
@@ -0,0 +1,138 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.netty.http.HttpProtocol;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.HttpClientRequest;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * HTTP transport for MCP servers.
+ * Every server gets its own pooled reactor-netty client with connect, read and request
+ * deadlines taken from {@link McpConfig}, gzip and HTTP/2 (negotiated via ALPN on https).
+ * Pool metrics are published as reactor.netty.connection.provider.* with the pool name "mcp-{serverId}".
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpHttpTransport {
+
+    private static final int MAX_RESPONSE_SIZE = 16 * 1024 * 1024;
+    private static final Duration LISTEN_IDLE_TIMEOUT = Duration.ofMinutes(10);
+
+    private final McpConfig mcpConfig;
+    private final Map<String, ServerClient> clients = new ConcurrentHashMap<>();
+
+    /**
+     * Send a POST request and stream the response through the handler.
+     * The request deadline bounds the wait for the first item and the silence between items,
+     * so progress notifications on a text/event-stream keep long-running calls alive.
+     */
+    public <T> Flux<T> exchange(McpServerConfig serverConfig, HttpHeaders headers, byte[] body,
+                                Function<ClientResponse, Flux<T>> responseHandler) {
+        return clientFor(serverConfig).webClient().post()
+                .uri(serverConfig.getUrl())
+                .headers(h -> h.addAll(headers))
+                .bodyValue(body)
+                .exchangeToFlux(responseHandler)
+                .timeout(Duration.ofMillis(mcpConfig.getRequest().getTimeout()));
+    }
+
+    /**
+     * Open a long-lived GET stream for server-initiated messages. Not bounded by the request deadline;
+     * the read timeout is raised so an idle stream is not cut, callers reconnect when it ends.
+     */
+    public <T> Flux<T> listen(McpServerConfig serverConfig, HttpHeaders headers,
+                              Function<ClientResponse, Flux<T>> responseHandler) {
+        return clientFor(serverConfig).webClient().get()
+                .uri(serverConfig.getUrl())
+                .headers(h -> h.addAll(headers))
+                .httpRequest(request -> {
+                    HttpClientRequest nativeRequest = request.getNativeRequest();
+                    nativeRequest.responseTimeout(LISTEN_IDLE_TIMEOUT);
+                })
+                .exchangeToFlux(responseHandler);
+    }
+
+    /**
+     * Close the connection pool of a server (e.g. after it was removed)
+     */
+    public void release(String serverId) {
+        ServerClient client = clients.remove(serverId);
+        if (client != null) {
+            client.connectionProvider().disposeLater().subscribe();
+            log.info("Released MCP connection pool for server: {}", serverId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        clients.keySet().forEach(this::release);
+    }
+
+    private ServerClient clientFor(McpServerConfig serverConfig) {
+        ServerClient client = clients.computeIfAbsent(serverConfig.getId(), id -> createClient(serverConfig));
+        if (!client.url().equals(serverConfig.getUrl())) {
+            // Server was re-registered with another URL - rebuild the pool
+            release(serverConfig.getId());
+            client = clients.computeIfAbsent(serverConfig.getId(), id -> createClient(serverConfig));
+        }
+        return client;
+    }
+
+    private ServerClient createClient(McpServerConfig serverConfig) {
+        McpConfig.Connection connection = mcpConfig.getConnection();
+
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("mcp-" + serverConfig.getId())
+                .maxConnections(connection.getMaxConnections())
+                .pendingAcquireTimeout(Duration.ofMillis(connection.getTimeout()))
+                .maxIdleTime(Duration.ofMillis(connection.getMaxIdleTime()))
+                .maxLifeTime(Duration.ofMillis(connection.getMaxLifeTime()))
+                .evictInBackground(Duration.ofSeconds(30))
+                .metrics(true)
+                .build();
+
+        boolean secure = serverConfig.getUrl().startsWith("https://");
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, connection.getTimeout())
+                .option(ChannelOption.SO_KEEPALIVE, true)
+                .responseTimeout(Duration.ofMillis(connection.getReadTimeout()))
+                .compress(true)
+                .protocol(secure
+                        ? new HttpProtocol[]{HttpProtocol.H2, HttpProtocol.HTTP11}
+                        : new HttpProtocol[]{HttpProtocol.HTTP11});
+        if (secure) {
+            httpClient = httpClient.secure();
+        }
+
+        WebClient webClient = WebClient.builder()
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(MAX_RESPONSE_SIZE))
+                .build();
+
+        log.info("Created MCP connection pool for server: {} (maxConnections: {}, connectTimeout: {}ms, readTimeout: {}ms, requestTimeout: {}ms)",
+                serverConfig.getName(), connection.getMaxConnections(), connection.getTimeout(),
+                connection.getReadTimeout(), mcpConfig.getRequest().getTimeout());
+
+        return new ServerClient(serverConfig.getUrl(), webClient, connectionProvider);
+    }
+
+    private record ServerClient(String url, WebClient webClient, ConnectionProvider connectionProvider) {
+    }
+}
@@ -0,0 +1,108 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.model.mcp.McpToolResult;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.POJONode;
+import com.fasterxml.jackson.databind.util.RawValue;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Reads JSON-RPC messages (or batches) with a streaming parser.
+ * The envelope (id, method, params, error) becomes a tree, but an object "result" is kept as an
+ * {@link McpToolResult}: its raw JSON text plus the text content collected in the same pass, so a tool
+ * result is tokenized exactly once. An array result is kept as raw text (a {@link RawValue} node).
+ * Neither is parsed into a tree unless a caller asks for one with {@link #tree(JsonNode)}
+ * (initialize and tools/list do).
+ */
+@Component
+@RequiredArgsConstructor
+public class McpMessageReader {
+
+    private final ObjectMapper objectMapper;
+
+    public JsonNode read(String json) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(json)) {
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.START_ARRAY) {
+                ArrayNode batch = objectMapper.createArrayNode();
+                while (parser.nextToken() == JsonToken.START_OBJECT) {
+                    batch.add(readEnvelope(parser, json));
+                }
+                return batch;
+            }
+            if (token != JsonToken.START_OBJECT) {
+                throw new IOException("Expected a JSON-RPC message but got " + token);
+            }
+            return readEnvelope(parser, json);
+        }
+    }
+
+    /**
+     * Raw JSON text of a result node read by this reader
+     */
+    public static String rawJson(JsonNode result) {
+        if (result instanceof POJONode pojo) {
+            if (pojo.getPojo() instanceof McpToolResult toolResult) {
+                return toolResult.getJson();
+            }
+            if (pojo.getPojo() instanceof RawValue raw) {
+                return String.valueOf(raw.rawValue());
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Tool result of a result node read by this reader, text content included; built from the JSON otherwise
+     */
+    public static McpToolResult toolResult(JsonNode result) {
+        if (result instanceof POJONode pojo && pojo.getPojo() instanceof McpToolResult toolResult) {
+            return toolResult;
+        }
+        return new McpToolResult(rawJson(result));
+    }
+
+    /**
+     * Materialize a raw result as a tree (a no-op for nodes that already are one)
+     */
+    public JsonNode tree(JsonNode result) {
+        if (result instanceof POJONode) {
+            try {
+                return objectMapper.readTree(rawJson(result));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException("Invalid JSON-RPC result: " + e.getOriginalMessage(), e);
+            }
+        }
+        return result;
+    }
+
+    private ObjectNode readEnvelope(JsonParser parser, String json) throws IOException {
+        ObjectNode message = objectMapper.createObjectNode();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+
+            if ("result".equals(field) && value == JsonToken.START_OBJECT) {
+                message.putPOJO(field, McpToolResult.read(parser, json));
+            } else if ("result".equals(field) && value == JsonToken.START_ARRAY) {
+                // Skip over the result and keep the exact text it spans
+                int start = (int) parser.currentTokenLocation().getCharOffset();
+                parser.skipChildren();
+                int end = (int) parser.currentLocation().getCharOffset();
+                message.putRawValue(field, new RawValue(json.substring(start, end)));
+            } else {
+                message.set(field, parser.readValueAsTree());
+            }
+        }
+        return message;
+    }
+}
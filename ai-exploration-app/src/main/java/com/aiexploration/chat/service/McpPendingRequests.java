@@ -0,0 +1,186 @@
+package com.aiexploration.chat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Pending-response table of a multiplexed JSON-RPC channel (stdio pipes, WebSocket).
+ * Requests are registered by id before they are written and completed by their responses in any order;
+ * progress notifications are routed to the request named by their progressToken.
+ * Ids are matched by their JSON text, so the number 1 and the string "1" stay different ids.
+ * The number of requests in flight is capped (slots are reserved atomically before registering),
+ * and a caller that cancels (or times out) has its ids forgotten and the server told with
+ * notifications/cancelled.
+ */
+@Slf4j
+final class McpPendingRequests {
+
+    private final String serverId;
+    private final int maxInFlight;
+    private final Consumer<JsonNode> cancellation;
+    private final Consumer<JsonNode> unrouted;
+    private final Map<String, Sinks.Many<JsonNode>> pending = new ConcurrentHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    /**
+     * @param cancellation sends notifications/cancelled for a request id
+     * @param unrouted     receives server-initiated messages that belong to no request
+     */
+    McpPendingRequests(String serverId, int maxInFlight, Consumer<JsonNode> cancellation, Consumer<JsonNode> unrouted) {
+        this.serverId = serverId;
+        this.maxInFlight = maxInFlight;
+        this.cancellation = cancellation;
+        this.unrouted = unrouted;
+    }
+
+    /**
+     * Register the requests of a message (or batch) and return the messages routed to them
+     */
+    Flux<JsonNode> register(JsonNode message) {
+        List<JsonNode> ids = new ArrayList<>();
+        Iterable<JsonNode> requests = message.isArray() ? message : List.of(message);
+        for (JsonNode request : requests) {
+            if (request.hasNonNull("id")) {
+                ids.add(request.get("id"));
+            }
+        }
+
+        if (!reserve(ids.size())) {
+            throw new McpException(-32000, "Too many requests in flight to MCP server " + serverId + " (max " + maxInFlight + ")");
+        }
+
+        List<Flux<JsonNode>> responses = new ArrayList<>(ids.size());
+        for (JsonNode id : ids) {
+            String key = key(id);
+            Sinks.Many<JsonNode> sink = Sinks.many().unicast().onBackpressureBuffer();
+            if (pending.put(key, sink) != null) {
+                // Duplicate id: the earlier request will never be matched, its slot goes to this one
+                inFlight.decrementAndGet();
+            }
+            responses.add(sink.asFlux()
+                    .doOnCancel(() -> {
+                        // Still pending, so the caller gave up before the response arrived
+                        if (remove(key, sink)) {
+                            log.debug("Cancelling request {} on MCP server {}", key, serverId);
+                            cancellation.accept(id);
+                        }
+                    })
+                    .doFinally(signal -> remove(key, sink)));
+        }
+        return Flux.merge(responses);
+    }
+
+    /**
+     * Forget the requests of a message that could not be written
+     */
+    void unregister(JsonNode message) {
+        Iterable<JsonNode> requests = message.isArray() ? message : List.of(message);
+        for (JsonNode request : requests) {
+            if (request.hasNonNull("id") && pending.remove(key(request.get("id"))) != null) {
+                inFlight.decrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Deliver a received message (or batch)
+     */
+    void route(JsonNode message) {
+        if (message.isArray()) {
+            message.forEach(this::route);
+            return;
+        }
+
+        if (message.has("method")) {
+            // Notification: progress is routed to the request that asked for it
+            JsonNode progressToken = message.path("params").get("progressToken");
+            Sinks.Many<JsonNode> sink = progressToken != null ? pending.get(key(progressToken)) : null;
+            if (sink != null) {
+                sink.tryEmitNext(message);
+            } else {
+                unrouted.accept(message);
+            }
+            return;
+        }
+
+        String key = key(message.path("id"));
+        Sinks.Many<JsonNode> sink = pending.remove(key);
+        if (sink != null) {
+            inFlight.decrementAndGet();
+            sink.tryEmitNext(message);
+            sink.tryEmitComplete();
+        } else {
+            log.debug("Dropping unmatched response from MCP server {}: {}", serverId, key);
+        }
+    }
+
+    /**
+     * MCP notifications/cancelled message for a request id, the id kept as sent (string or number)
+     */
+    static String cancelledNotification(JsonNode requestId) {
+        ObjectNode notification = JsonNodeFactory.instance.objectNode();
+        notification.put("jsonrpc", "2.0");
+        notification.put("method", "notifications/cancelled");
+        ObjectNode params = notification.putObject("params");
+        params.set("requestId", requestId);
+        params.put("reason", "Request cancelled by client");
+        return notification.toString();
+    }
+
+    /**
+     * The channel is gone: fail everything still waiting
+     */
+    void failAll(Throwable error) {
+        pending.forEach((key, sink) -> {
+            if (remove(key, sink)) {
+                sink.tryEmitError(error);
+            }
+        });
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Take slots for the requests of a message, all or none
+     */
+    private boolean reserve(int count) {
+        while (true) {
+            int current = inFlight.get();
+            if (current + count > maxInFlight) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + count)) {
+                return true;
+            }
+        }
+    }
+
+    private boolean remove(String key, Sinks.Many<JsonNode> sink) {
+        if (pending.remove(key, sink)) {
+            inFlight.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Table key of an id: its JSON text, which keeps numbers and strings apart
+     * (1 and "1", but also an int and a long of the same value parse to equal keys)
+     */
+    private static String key(JsonNode id) {
+        return id.toString();
+    }
+}
@@ -0,0 +1,227 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpReplicaStatus;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.net.ConnectException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Replica groups: a logical server with {@link McpServerConfig#getReplicas()} is served by several identical URLs.
+ * Each call goes to the replica with the lowest (in-flight + 1) * latency EWMA. Replicas failing
+ * mcp.balancer.failure-threshold times in a row are ejected for mcp.balancer.ejection-duration.
+ * Every replica is a separate server view (id "{serverId}#{index}"), so sessions and connection pools stay per replica.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpReplicaBalancer {
+
+    private final McpConfig mcpConfig;
+    private final Map<String, Group> groups = new ConcurrentHashMap<>();
+
+    /**
+     * Run a call on the best replica of the server (the server itself when it has no replicas).
+     * A call that could not connect is retried once on another replica.
+     */
+    public <T> Mono<T> execute(McpServerConfig serverConfig, Function<McpServerConfig, Mono<T>> call) {
+        if (!hasReplicas(serverConfig)) {
+            return call.apply(serverConfig);
+        }
+
+        return Mono.defer(() -> {
+            Group group = groupFor(serverConfig);
+            Replica replica = group.choose(null);
+
+            return attempt(replica, call)
+                    .onErrorResume(McpReplicaBalancer::isConnectFailure, e -> {
+                        Replica other = group.choose(replica);
+                        if (other == null) {
+                            return Mono.error(e);
+                        }
+                        log.warn("Replica {} of MCP server {} is unreachable, retrying on {}",
+                                replica.config.getUrl(), serverConfig.getName(), other.config.getUrl());
+                        return attempt(other, call);
+                    });
+        });
+    }
+
+    public List<McpReplicaStatus> getStatus(McpServerConfig serverConfig) {
+        if (!hasReplicas(serverConfig)) {
+            return Collections.emptyList();
+        }
+        return groupFor(serverConfig).replicas.stream().map(Replica::status).toList();
+    }
+
+    /**
+     * Forget the replicas of a server, returning their views so the caller can release them
+     */
+    public List<McpServerConfig> remove(String serverId) {
+        Group group = groups.remove(serverId);
+        return group != null ? group.replicas.stream().map(replica -> replica.config).toList() : Collections.emptyList();
+    }
+
+    private boolean hasReplicas(McpServerConfig serverConfig) {
+        return serverConfig.getTransport() != McpServerConfig.Transport.STDIO
+                && serverConfig.getReplicas() != null && !serverConfig.getReplicas().isEmpty();
+    }
+
+    private <T> Mono<T> attempt(Replica replica, Function<McpServerConfig, Mono<T>> call) {
+        return Mono.defer(() -> {
+            replica.inFlight.incrementAndGet();
+            long startTime = System.nanoTime();
+
+            return call.apply(replica.config)
+                    .doOnSuccess(result -> replica.recordSuccess(System.nanoTime() - startTime))
+                    .doOnError(e -> {
+                        if (isReplicaFailure(e)) {
+                            replica.recordFailure(e);
+                        } else {
+                            replica.recordSuccess(System.nanoTime() - startTime);
+                        }
+                    })
+                    .doFinally(signal -> replica.inFlight.decrementAndGet());
+        });
+    }
+
+    private Group groupFor(McpServerConfig serverConfig) {
+        List<String> urls = new ArrayList<>();
+        urls.add(serverConfig.getUrl());
+        urls.addAll(serverConfig.getReplicas());
+
+        return groups.compute(serverConfig.getId(), (id, existing) ->
+                existing != null && existing.urls.equals(urls) ? existing : new Group(serverConfig, urls));
+    }
+
+    /**
+     * The replica answered (even with a JSON-RPC error or a client error), so it is alive
+     */
+    private static boolean isReplicaFailure(Throwable e) {
+        if (e instanceof McpException) {
+            return false;
+        }
+        return !(e instanceof WebClientResponseException responseException)
+                || responseException.getStatusCode().is5xxServerError();
+    }
+
+    /**
+     * The request never reached the replica, so it is safe to send it to another one
+     */
+    private static boolean isConnectFailure(Throwable e) {
+        return e instanceof WebClientRequestException && e.getCause() instanceof ConnectException;
+    }
+
+    private final class Group {
+
+        private final List<String> urls;
+        private final List<Replica> replicas = new ArrayList<>();
+
+        Group(McpServerConfig serverConfig, List<String> urls) {
+            this.urls = urls;
+            for (int i = 0; i < urls.size(); i++) {
+                replicas.add(new Replica(serverConfig.toBuilder()
+                        .id(serverConfig.getId() + "#" + i)
+                        .name(serverConfig.getName() + " (" + urls.get(i) + ")")
+                        .url(urls.get(i))
+                        .replicas(null)
+                        .sessionId(null)
+                        .group(serverConfig)
+                        .build()));
+            }
+            log.info("Created replica group for MCP server {}: {}", serverConfig.getName(), urls);
+        }
+
+        /**
+         * Replica with the best score, excluding the given one. If every replica is ejected,
+         * the one whose ejection ends first is used.
+         */
+        Replica choose(Replica exclude) {
+            long now = System.currentTimeMillis();
+            Replica best = null;
+            double bestScore = Double.MAX_VALUE;
+            for (Replica replica : replicas) {
+                if (replica == exclude || replica.isEjected(now)) {
+                    continue;
+                }
+                double score = (replica.inFlight.get() + 1) * Math.max(replica.latencyMs, 1.0);
+                if (score < bestScore) {
+                    best = replica;
+                    bestScore = score;
+                }
+            }
+
+            if (best == null && exclude == null) {
+                for (Replica replica : replicas) {
+                    if (best == null || replica.ejectedUntil < best.ejectedUntil) {
+                        best = replica;
+                    }
+                }
+            }
+            return best;
+        }
+    }
+
+    private final class Replica {
+
+        private final McpServerConfig config;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private volatile double latencyMs;
+        private volatile long ejectedUntil;
+        private int consecutiveFailures;
+
+        Replica(McpServerConfig config) {
+            this.config = config;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil > now;
+        }
+
+        synchronized void recordSuccess(long elapsedNanos) {
+            double sample = elapsedNanos / 1_000_000.0;
+            double decay = mcpConfig.getBalancer().getLatencyDecay();
+            latencyMs = latencyMs == 0 ? sample : decay * sample + (1 - decay) * latencyMs;
+            consecutiveFailures = 0;
+            ejectedUntil = 0;
+        }
+
+        synchronized void recordFailure(Throwable e) {
+            consecutiveFailures++;
+            if (consecutiveFailures >= mcpConfig.getBalancer().getFailureThreshold()) {
+                ejectedUntil = System.currentTimeMillis() + mcpConfig.getBalancer().getEjectionDuration();
+                log.warn("Ejecting replica {} after {} consecutive failures: {}",
+                        config.getUrl(), consecutiveFailures, e.getMessage());
+            }
+        }
+
+        synchronized McpReplicaStatus status() {
+            boolean ejected = isEjected(System.currentTimeMillis());
+            return McpReplicaStatus.builder()
+                    .url(config.getUrl())
+                    .inFlight(inFlight.get())
+                    .latencyMs(latencyMs)
+                    .consecutiveFailures(consecutiveFailures)
+                    .ejected(ejected)
+                    .ejectedUntil(ejected
+                            ? LocalDateTime.ofInstant(Instant.ofEpochMilli(ejectedUntil), ZoneId.systemDefault())
+                            : null)
+                    .build();
+        }
+    }
+}
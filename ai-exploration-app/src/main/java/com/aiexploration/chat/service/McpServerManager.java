@@ -1,17 +1,36 @@
 package com.aiexploration.chat.service;
 
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.McpToolSnapshot;
+import com.aiexploration.chat.model.mcp.McpEncodingStats;
+import com.aiexploration.chat.model.mcp.McpReplicaStatus;
 import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.aiexploration.chat.model.mcp.McpServerHealth;
 import com.aiexploration.chat.model.mcp.McpTool;
 import com.aiexploration.chat.model.mcp.McpToolExecutionRequest;
 import com.aiexploration.chat.model.mcp.McpToolExecutionResponse;
+import com.aiexploration.chat.model.mcp.McpToolsChangedEvent;
+import com.aiexploration.chat.repository.McpToolSnapshotRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
 
 @Slf4j
@@ -20,33 +39,83 @@ public class McpServerManager {
 
     private final Map<String, McpServerConfig> servers = new ConcurrentHashMap<>();
     private final Map<String, List<McpTool>> serverTools = new ConcurrentHashMap<>();
+    private final Map<String, String> toolVersions = new ConcurrentHashMap<>(); // tools/list etag per server
 
     private final McpClientService mcpClient;
+    private final McpConfig mcpConfig;
+    private final ApplicationEventPublisher eventPublisher;
+    private final McpToolSnapshotRepository snapshotRepository;
+    private final ObjectMapper objectMapper;
+    private final McpReplicaBalancer replicaBalancer;
+    private final McpCodec codec;
 
     @Autowired(required = false)
     private McpServerConfig defaultMcpServer;
 
-    public McpServerManager(McpClientService mcpClient) {
+    public McpServerManager(McpClientService mcpClient, McpConfig mcpConfig, ApplicationEventPublisher eventPublisher,
+                            McpToolSnapshotRepository snapshotRepository, ObjectMapper objectMapper,
+                            McpReplicaBalancer replicaBalancer, McpCodec codec) {
         this.mcpClient = mcpClient;
+        this.mcpConfig = mcpConfig;
+        this.eventPublisher = eventPublisher;
+        this.snapshotRepository = snapshotRepository;
+        this.objectMapper = objectMapper;
+        this.replicaBalancer = replicaBalancer;
+        this.codec = codec;
     }
 
     @PostConstruct
     public void initialize() {
         log.info("Initializing MCP Server Manager");
 
-        // Load default server from configuration
+        // Servers announcing listChanged push notifications/tools/list_changed, re-list only that server
+        mcpClient.toolListChanges()
+                .publishOn(Schedulers.boundedElastic())
+                .subscribe(this::refreshServerTools);
+
+        // Register default server from configuration; it is connected once the application is ready
         if (defaultMcpServer != null) {
             log.info("Adding default MCP server: {}", defaultMcpServer.getName());
-            addServer(defaultMcpServer);
+            register(defaultMcpServer);
+            loadSnapshot(defaultMcpServer);
         } else {
             log.info("No default MCP server configured");
         }
     }
 
+    /**
+     * Discover servers registered at startup in the background, so boot time does not depend on them.
+     * Until then their last known catalog (snapshot) is served; discovery reconciles it with a conditional tools/list.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void discoverServers() {
+        for (McpServerConfig server : servers.values()) {
+            Thread.ofVirtual().name("mcp-discovery-" + server.getId()).start(() -> {
+                log.info("Discovering MCP server in background: {}", server.getName());
+                connect(server);
+            });
+        }
+    }
+
     public McpServerConfig addServer(McpServerConfig config) {
+        register(config);
+        connect(config);
+        return config;
+    }
+
+    private void register(McpServerConfig config) {
         // Validate config
-        if (config.getUrl() == null || config.getUrl().isEmpty()) {
+        if (config.getTransport() == null) {
+            config.setTransport(McpServerConfig.Transport.HTTP);
+        }
+        if (config.getTransport() == McpServerConfig.Transport.STDIO) {
+            if (config.getCommand() == null || config.getCommand().isEmpty()) {
+                throw new IllegalArgumentException("Command is required for stdio server");
+            }
+        } else if (config.getUrl() == null || config.getUrl().isEmpty()) {
             throw new IllegalArgumentException("Server URL is required");
+        } else if (config.getReplicas() != null && config.getReplicas().stream().anyMatch(url -> url == null || url.isEmpty())) {
+            throw new IllegalArgumentException("Replica URLs must not be empty");
         }
 
         // Generate ID if not provided
@@ -61,30 +130,37 @@ public class McpServerManager {
 
         // Set enabled to true by default
         config.setEnabled(true);
+        config.setHealth(new McpServerHealth());
+
+        // Add to servers map
+        servers.put(config.getId(), config);
+        log.info("Added MCP server: {} (id: {})", config.getName(), config.getId());
+    }
 
+    private void connect(McpServerConfig config) {
         // Test connection
         boolean connectionSuccessful = mcpClient.initializeConnection(config);
         if (!connectionSuccessful) {
             log.warn("Failed to initialize connection to MCP server: {}", config.getName());
         }
 
-        // Add to servers map
-        servers.put(config.getId(), config);
-        log.info("Added MCP server: {} (id: {})", config.getName(), config.getId());
+        recordCheck(config, connectionSuccessful ? null : "Initialization failed");
 
         // Try to load tools immediately
         if (connectionSuccessful) {
             refreshServerTools(config.getId());
         }
-
-        return config;
     }
 
     public void removeServer(String serverId) {
         McpServerConfig removed = servers.remove(serverId);
         serverTools.remove(serverId);
+        toolVersions.remove(serverId);
 
         if (removed != null) {
+            mcpClient.disconnect(removed);
+            deleteSnapshot(serverId);
+            eventPublisher.publishEvent(new McpToolsChangedEvent(serverId, List.of()));
             log.info("Removed MCP server: {} (id: {})", removed.getName(), serverId);
         } else {
             log.warn("Attempted to remove non-existent server: {}", serverId);
@@ -99,6 +175,24 @@ public class McpServerManager {
         return new ArrayList<>(servers.values());
     }
 
+    public List<McpReplicaStatus> getReplicaStatus(String serverId) {
+        McpServerConfig server = servers.get(serverId);
+        return server != null ? replicaBalancer.getStatus(server) : Collections.emptyList();
+    }
+
+    /**
+     * JSON vs CBOR vs Smile on recorded payloads: recent tool results and the persisted tool catalogs
+     */
+    public List<McpEncodingStats> compareEncodings() {
+        List<String> payloads = new ArrayList<>(codec.getSamples());
+        try {
+            snapshotRepository.findAll().forEach(snapshot -> payloads.add(snapshot.getTools()));
+        } catch (Exception e) {
+            log.warn("Failed to load tool snapshots for encoding comparison", e);
+        }
+        return codec.compare(payloads);
+    }
+
     public List<McpTool> refreshServerTools(String serverId) {
         McpServerConfig server = servers.get(serverId);
         if (server == null) {
@@ -111,25 +205,265 @@ public class McpServerManager {
             return Collections.emptyList();
         }
 
+        // Conditional tools/list: an unchanged server answers notModified and nothing is rebuilt
         log.info("Refreshing tools for MCP server: {}", server.getName());
-        List<McpTool> tools = mcpClient.listTools(server);
-        serverTools.put(serverId, tools);
+        McpClient.ToolList toolList = mcpClient.listTools(server, serverTools.containsKey(serverId) ? toolVersions.get(serverId) : null);
+        if (toolList == null) {
+            return getToolsForServer(serverId);
+        }
+        if (toolList.notModified()) {
+            log.debug("Tools of MCP server {} are up to date", server.getName());
+            return getToolsForServer(serverId);
+        }
+
+        List<McpTool> tools = toolList.tools();
+        List<McpTool> previous = serverTools.put(serverId, tools);
+        if (toolList.etag() != null) {
+            toolVersions.put(serverId, toolList.etag());
+        } else {
+            toolVersions.remove(serverId);
+        }
+
+        if (!tools.equals(previous)) {
+            saveSnapshot(server, tools, toolList.etag());
+            eventPublisher.publishEvent(new McpToolsChangedEvent(serverId, tools));
+        }
 
         return tools;
     }
 
+    /**
+     * Serve the persisted catalog of a server until it has been discovered. The etag is restored too,
+     * so reconciling an unchanged server is a notModified tools/list.
+     */
+    private void loadSnapshot(McpServerConfig server) {
+        try {
+            snapshotRepository.findById(server.getId()).ifPresent(snapshot -> {
+                try {
+                    List<McpTool> tools = objectMapper.readValue(snapshot.getTools(), new TypeReference<List<McpTool>>() {});
+                    serverTools.put(server.getId(), tools);
+                    if (snapshot.getEtag() != null) {
+                        toolVersions.put(server.getId(), snapshot.getEtag());
+                    }
+                    log.info("Loaded {} tools of MCP server {} from snapshot ({})",
+                            tools.size(), server.getName(), snapshot.getUpdatedAt());
+                } catch (Exception e) {
+                    log.warn("Ignoring unreadable tool snapshot of MCP server: {}", server.getName(), e);
+                }
+            });
+        } catch (Exception e) {
+            log.warn("Failed to load tool snapshot of MCP server: {}", server.getName(), e);
+        }
+    }
+
+    private void saveSnapshot(McpServerConfig server, List<McpTool> tools, String etag) {
+        try {
+            snapshotRepository.save(new McpToolSnapshot(
+                    server.getId(), server.getName(), etag, objectMapper.writeValueAsString(tools), null));
+        } catch (Exception e) {
+            log.warn("Failed to save tool snapshot of MCP server: {}", server.getName(), e);
+        }
+    }
+
+    private void deleteSnapshot(String serverId) {
+        try {
+            snapshotRepository.deleteById(serverId);
+        } catch (Exception e) {
+            log.warn("Failed to delete tool snapshot of MCP server: {}", serverId, e);
+        }
+    }
+
     public List<McpTool> getToolsForServer(String serverId) {
         return serverTools.getOrDefault(serverId, Collections.emptyList());
     }
 
+    /**
+     * Advertised catalog: tools of servers whose circuit is not open
+     */
     public List<McpTool> getAllTools() {
+        return serverTools.entrySet().stream()
+                .filter(entry -> isAvailable(entry.getKey()))
+                .flatMap(entry -> entry.getValue().stream())
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * All known tools, including those of servers that are currently unavailable
+     */
+    public List<McpTool> getRegisteredTools() {
         return serverTools.values().stream()
                 .flatMap(List::stream)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Whether calls may be sent to the server: it exists, is enabled and its circuit is not open
+     */
+    public boolean isAvailable(String serverId) {
+        McpServerConfig server = servers.get(serverId);
+        if (server == null || !server.isEnabled()) {
+            return false;
+        }
+        McpServerHealth health = server.getHealth();
+        return health == null || health.getState() == McpServerHealth.CircuitState.CLOSED;
+    }
+
+    /**
+     * Ping every enabled server. Consecutive failures open the circuit; an open circuit is probed again
+     * once mcp.health.open-duration has elapsed (half-open) and closes on the first successful ping.
+     */
+    @Scheduled(initialDelayString = "${mcp.health.interval:30000}", fixedDelayString = "${mcp.health.interval:30000}")
+    public void checkHealth() {
+        if (!mcpConfig.getHealth().isEnabled() || servers.isEmpty()) {
+            return;
+        }
+
+        // Servers are pinged concurrently, so one slow server does not delay the others
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (McpServerConfig server : servers.values()) {
+                if (server.isEnabled() && dueForCheck(server)) {
+                    executor.submit(() -> checkHealth(server));
+                }
+            }
+        }
+    }
+
+    private boolean dueForCheck(McpServerConfig server) {
+        McpServerHealth health = server.getHealth();
+        if (health == null || health.getState() != McpServerHealth.CircuitState.OPEN) {
+            return true;
+        }
+
+        LocalDateTime retryAt = health.getOpenedAt().plus(Duration.ofMillis(mcpConfig.getHealth().getOpenDuration()));
+        if (LocalDateTime.now().isBefore(retryAt)) {
+            return false;
+        }
+
+        health.setState(McpServerHealth.CircuitState.HALF_OPEN);
+        return true;
+    }
+
+    private void checkHealth(McpServerConfig server) {
+        String error = null;
+        try {
+            mcpClient.ping(server, Duration.ofMillis(mcpConfig.getHealth().getTimeout()));
+        } catch (Exception e) {
+            error = e.getMessage() != null ? e.getMessage() : e.getClass().getSimpleName();
+            log.debug("Health check failed for MCP server: {}", server.getName(), e);
+        }
+
+        recordCheck(server, error);
+
+        // Load tools of a server that came up after it was added; servers without listChanged
+        // are polled with a conditional tools/list, which costs nothing while the catalog is unchanged
+        if (error == null && servers.containsKey(server.getId())
+                && (!serverTools.containsKey(server.getId()) || !server.isToolsListChanged())) {
+            refreshServerTools(server.getId());
+        }
+    }
+
+    /**
+     * Update the circuit of a server with the outcome of a check, error is null on success
+     */
+    private void recordCheck(McpServerConfig server, String error) {
+        McpServerHealth health = server.getHealth();
+        if (health == null) {
+            health = new McpServerHealth();
+            server.setHealth(health);
+        }
+
+        synchronized (health) {
+            LocalDateTime now = LocalDateTime.now();
+            health.setLastCheckedAt(now);
+
+            if (error == null) {
+                if (health.getState() != McpServerHealth.CircuitState.CLOSED) {
+                    log.info("MCP server {} is healthy again, closing circuit", server.getName());
+                }
+                health.setState(McpServerHealth.CircuitState.CLOSED);
+                health.setConsecutiveFailures(0);
+                health.setLastSuccessAt(now);
+                health.setLastError(null);
+                return;
+            }
+
+            health.setConsecutiveFailures(health.getConsecutiveFailures() + 1);
+            health.setLastError(error);
+
+            boolean threshold = health.getConsecutiveFailures() >= mcpConfig.getHealth().getFailureThreshold();
+            if (health.getState() == McpServerHealth.CircuitState.HALF_OPEN
+                    || (health.getState() == McpServerHealth.CircuitState.CLOSED && threshold)) {
+                log.warn("Opening circuit for MCP server {} after {} failed checks: {}",
+                        server.getName(), health.getConsecutiveFailures(), error);
+                health.setState(McpServerHealth.CircuitState.OPEN);
+                health.setOpenedAt(now);
+            }
+        }
+    }
+
     public McpToolExecutionResponse executeTool(McpToolExecutionRequest request) {
-        // Validate request
+        McpServerConfig server = serverOf(request);
+        McpToolExecutionResponse rejected = validate(request, server);
+        if (rejected != null) {
+            return rejected;
+        }
+
+        // Execute tool
+        return mcpClient.executeTool(server, request);
+    }
+
+    /**
+     * Run many tool calls concurrently, across servers, emitting each response as soon as it finishes.
+     * Calls to one server run at most mcp.batch.per-server-concurrency at a time. Every response carries
+     * the position of its request in metadata.index, since responses arrive in completion order.
+     * The server is looked up again when each call starts, so a server removed, disabled or tripped
+     * while the batch runs fails only its own remaining calls.
+     */
+    public Flux<McpToolExecutionResponse> executeTools(List<McpToolExecutionRequest> requests) {
+        Map<String, List<Integer>> byServer = new LinkedHashMap<>();
+        List<McpToolExecutionResponse> rejected = new ArrayList<>();
+        for (int i = 0; i < requests.size(); i++) {
+            McpToolExecutionRequest request = requests.get(i);
+            McpToolExecutionResponse response = validate(request, serverOf(request));
+            if (response != null) {
+                rejected.add(withIndex(response, i, request));
+            } else {
+                byServer.computeIfAbsent(request.getServerId(), id -> new ArrayList<>()).add(i);
+            }
+        }
+
+        int perServerConcurrency = Math.max(1, mcpConfig.getBatch().getPerServerConcurrency());
+        Flux<McpToolExecutionResponse> executed = Flux.fromIterable(byServer.entrySet())
+                .flatMap(entry -> Flux.fromIterable(entry.getValue())
+                        .flatMap(index -> {
+                            McpToolExecutionRequest request = requests.get(index);
+                            return Mono.defer(() -> {
+                                        McpServerConfig server = serverOf(request);
+                                        McpToolExecutionResponse rejection = validate(request, server);
+                                        return rejection != null ? Mono.just(rejection) : mcpClient.callTool(server, request);
+                                    })
+                                    .onErrorResume(e -> Mono.just(McpToolExecutionResponse.builder()
+                                            .success(false)
+                                            .error(e.getMessage())
+                                            .build()))
+                                    .map(response -> withIndex(response, index, request));
+                        }, perServerConcurrency), Math.max(1, byServer.size()));
+
+        return Flux.fromIterable(rejected).concatWith(executed);
+    }
+
+    public int getMaxBatchRequests() {
+        return mcpConfig.getBatch().getMaxRequests();
+    }
+
+    private McpServerConfig serverOf(McpToolExecutionRequest request) {
+        return request.getServerId() != null ? servers.get(request.getServerId()) : null;
+    }
+
+    /**
+     * Reject a request that cannot be executed on the server (null if it is not registered), null if it can
+     */
+    private McpToolExecutionResponse validate(McpToolExecutionRequest request, McpServerConfig server) {
         if (request.getServerId() == null || request.getServerId().isEmpty()) {
             return McpToolExecutionResponse.builder()
                     .success(false)
@@ -144,8 +478,6 @@ public class McpServerManager {
                     .build();
         }
 
-        // Get server
-        McpServerConfig server = servers.get(request.getServerId());
         if (server == null) {
             return McpToolExecutionResponse.builder()
                     .success(false)
@@ -160,8 +492,26 @@ public class McpServerManager {
                     .build();
         }
 
-        // Execute tool
-        return mcpClient.executeTool(server, request);
+        if (!isAvailable(server.getId())) {
+            return McpToolExecutionResponse.builder()
+                    .success(false)
+                    .error("Server is unavailable (circuit open): " + server.getName())
+                    .build();
+        }
+
+        return null;
+    }
+
+    private static McpToolExecutionResponse withIndex(McpToolExecutionResponse response, int index,
+                                                      McpToolExecutionRequest request) {
+        Map<String, Object> metadata = response.getMetadata() != null
+                ? new HashMap<>(response.getMetadata())
+                : new HashMap<>();
+        metadata.put("index", index);
+        metadata.put("serverId", request.getServerId());
+        metadata.put("toolName", request.getToolName());
+        response.setMetadata(metadata);
+        return response;
     }
 
     public boolean testConnection(String serverId) {
@@ -171,6 +521,8 @@ public class McpServerManager {
             return false;
         }
 
-        return mcpClient.initializeConnection(server);
+        boolean success = mcpClient.initializeConnection(server);
+        recordCheck(server, success ? null : "Initialization failed");
+        return success;
     }
 }
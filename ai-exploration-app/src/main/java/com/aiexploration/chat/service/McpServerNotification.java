@@ -0,0 +1,9 @@
+package com.aiexploration.chat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Server-initiated message received on a long-lived channel that does not belong to a pending request
+ */
+public record McpServerNotification(String serverId, JsonNode message) {
+}
@@ -0,0 +1,12 @@
+package com.aiexploration.chat.service;
+
+/**
+ * The channel a session was initialized on is gone (e.g. a respawned stdio process), so the request was
+ * not sent. {@link McpSessionManager} re-initializes the session and replays the request.
+ */
+public class McpSessionLostException extends IllegalStateException {
+
+    public McpSessionLostException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,169 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * MCP session lifecycle.
+ * Keeps a pool of sessions per server (mcp.session.pool-size or McpServerConfig.sessionPoolSize),
+ * initializes them lazily, routes each call to the least busy session and, when the server reports
+ * the session as unknown or expired (HTTP 404 to a request that carried Mcp-Session-Id), re-initializes
+ * it transparently and retries the call once. The same happens when the transport lost the channel the
+ * session was initialized on (a stdio process that was respawned).
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpSessionManager {
+
+    private static final String SESSION_HEADER = "Mcp-Session-Id";
+
+    private final McpConfig mcpConfig;
+    private final Map<String, Slot[]> pools = new ConcurrentHashMap<>();
+
+    /**
+     * Run a call on a pooled session of the server. The call receives the session ID to send
+     * (null when the server does not issue session IDs).
+     */
+    public <T> Mono<T> execute(McpServerConfig serverConfig, Function<McpServerConfig, Mono<Session>> initializer,
+                               Function<String, Mono<T>> call) {
+        return Mono.defer(() -> {
+            Slot slot = leastBusy(poolFor(serverConfig));
+            slot.inFlight.incrementAndGet();
+
+            return slot.session(serverConfig, initializer)
+                    .flatMap(session -> call.apply(session.id())
+                            .onErrorResume(e -> isInvalidSession(e, session), e -> {
+                                log.warn("MCP session {} of server {} is no longer valid, re-initializing",
+                                        session.id(), serverConfig.getName());
+                                return slot.reinitialize(session, serverConfig, initializer)
+                                        .flatMap(fresh -> call.apply(fresh.id()));
+                            }))
+                    .doFinally(signal -> slot.inFlight.decrementAndGet());
+        });
+    }
+
+    /**
+     * Drop all sessions of the server and open the first one of a fresh pool
+     */
+    public Mono<Session> open(McpServerConfig serverConfig, Function<McpServerConfig, Mono<Session>> initializer) {
+        return Mono.defer(() -> {
+            pools.remove(serverConfig.getId());
+            return poolFor(serverConfig)[0].session(serverConfig, initializer);
+        });
+    }
+
+    public void remove(String serverId) {
+        pools.remove(serverId);
+    }
+
+    private Slot[] poolFor(McpServerConfig serverConfig) {
+        return pools.computeIfAbsent(serverConfig.getId(), id -> {
+            int size = serverConfig.getSessionPoolSize() != null
+                    ? serverConfig.getSessionPoolSize()
+                    : mcpConfig.getSession().getPoolSize();
+            Slot[] slots = new Slot[Math.max(1, size)];
+            for (int i = 0; i < slots.length; i++) {
+                slots[i] = new Slot();
+            }
+            return slots;
+        });
+    }
+
+    private Slot leastBusy(Slot[] slots) {
+        Slot best = slots[0];
+        for (int i = 1; i < slots.length; i++) {
+            if (slots[i].inFlight.get() < best.inFlight.get()) {
+                best = slots[i];
+            }
+        }
+        return best;
+    }
+
+    /**
+     * The server rejects an unknown/expired session with 404 (MCP streamable HTTP), and a transport reports
+     * a session whose channel is gone with {@link McpSessionLostException}. JSON-RPC errors are never taken
+     * for an invalid session: a tool error is not a reason to re-initialize and replay the call.
+     */
+    private boolean isInvalidSession(Throwable e, Session session) {
+        if (e instanceof McpSessionLostException) {
+            return true;
+        }
+        if (session.id() == null || !(e instanceof WebClientResponseException responseException)
+                || responseException.getStatusCode().value() != HttpStatus.NOT_FOUND.value()) {
+            return false;
+        }
+        HttpRequest request = responseException.getRequest();
+        return request == null || request.getHeaders().containsKey(SESSION_HEADER);
+    }
+
+    /**
+     * Initialized MCP session: server-issued ID (may be null) and the initialize result
+     */
+    public record Session(String id, JsonNode initializeResult) {
+    }
+
+    private static final class Slot {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private Mono<Session> session;
+        private Session current;
+        private long generation;
+
+        /**
+         * The slot's session, initializing it on first use. Concurrent callers share one initialize.
+         */
+        synchronized Mono<Session> session(McpServerConfig serverConfig, Function<McpServerConfig, Mono<Session>> initializer) {
+            if (session == null) {
+                session = start(serverConfig, initializer);
+            }
+            return session;
+        }
+
+        /**
+         * Replace a stale session, unless another caller already did
+         */
+        synchronized Mono<Session> reinitialize(Session stale, McpServerConfig serverConfig,
+                                                Function<McpServerConfig, Mono<Session>> initializer) {
+            if (current == stale) {
+                current = null;
+                session = start(serverConfig, initializer);
+            }
+            return session(serverConfig, initializer);
+        }
+
+        private Mono<Session> start(McpServerConfig serverConfig, Function<McpServerConfig, Mono<Session>> initializer) {
+            long attempt = ++generation;
+            return initializer.apply(serverConfig)
+                    .doOnNext(opened -> {
+                        synchronized (this) {
+                            if (generation == attempt) {
+                                current = opened;
+                            }
+                        }
+                    })
+                    .doOnError(e -> {
+                        // Do not cache a failed initialize, the next call tries again
+                        synchronized (this) {
+                            if (generation == attempt) {
+                                session = null;
+                            }
+                        }
+                    })
+                    .cache();
+        }
+    }
+}
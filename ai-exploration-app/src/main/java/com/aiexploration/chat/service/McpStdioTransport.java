@@ -0,0 +1,200 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * stdio transport for locally spawned MCP servers.
+ * The process is started on first use and kept alive; messages are newline-delimited JSON-RPC
+ * over its stdin/stdout. Concurrent requests share the pipes and are matched to responses by id
+ * (see {@link McpPendingRequests}).
+ * A process that exits fails its pending requests, drops the server's sessions (see {@link McpSessionManager})
+ * and is respawned on the next request. A fresh process accepts nothing but initialize until it has been
+ * initialized: any other request fails with {@link McpSessionLostException}, so the session is re-initialized
+ * before the request is replayed.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpStdioTransport {
+
+    private static final String INITIALIZE = "initialize";
+
+    private final McpMessageReader messageReader;
+    private final McpConfig mcpConfig;
+    private final McpSessionManager sessionManager;
+    private final Map<String, StdioProcess> processes = new ConcurrentHashMap<>();
+    private final Sinks.Many<McpServerNotification> notifications = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Send a JSON-RPC message (or batch) and emit every message routed to it: the response for each
+     * request id and notifications/progress whose progressToken is one of those ids.
+     */
+    public Flux<JsonNode> exchange(McpServerConfig serverConfig, JsonNode message) {
+        return Flux.defer(() -> {
+                    StdioProcess process = processFor(serverConfig);
+                    boolean initialize = INITIALIZE.equals(message.path("method").asText());
+                    if (!initialize && !process.initialized) {
+                        return Flux.error(new McpSessionLostException(
+                                "MCP server process was restarted and is not initialized: " + serverConfig.getName()));
+                    }
+                    Flux<JsonNode> responses = process.pending.register(message);
+
+                    try {
+                        String line = message.toString();
+                        log.debug("Sending JSON-RPC message to stdio server {}: {}", serverConfig.getName(), line);
+                        process.write(line);
+                        if (initialize) {
+                            process.initialized = true;
+                        }
+                    } catch (IOException e) {
+                        process.pending.unregister(message);
+                        return Flux.error(new UncheckedIOException("Failed to write to MCP server process: " + serverConfig.getName(), e));
+                    }
+
+                    return responses;
+                })
+                .subscribeOn(Schedulers.boundedElastic())
+                .timeout(Duration.ofMillis(mcpConfig.getRequest().getTimeout()));
+    }
+
+    /**
+     * Server-initiated notifications that do not belong to a pending request (e.g. notifications/tools/list_changed)
+     */
+    public Flux<McpServerNotification> notifications() {
+        return notifications.asFlux();
+    }
+
+    /**
+     * Stop the server process
+     */
+    public void release(String serverId) {
+        StdioProcess process = processes.remove(serverId);
+        if (process != null) {
+            process.destroy();
+            log.info("Stopped MCP server process: {}", serverId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        processes.keySet().forEach(this::release);
+    }
+
+    private StdioProcess processFor(McpServerConfig serverConfig) {
+        return processes.compute(serverConfig.getId(), (id, existing) -> {
+            if (existing != null && existing.process.isAlive()) {
+                return existing;
+            }
+            try {
+                return new StdioProcess(serverConfig);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to start MCP server process: " + serverConfig.getName(), e);
+            }
+        });
+    }
+
+    private final class StdioProcess {
+
+        private final String serverId;
+        private final Process process;
+        private final Writer stdin;
+        private final McpPendingRequests pending;
+        private volatile boolean initialized;
+
+        StdioProcess(McpServerConfig serverConfig) throws IOException {
+            if (serverConfig.getCommand() == null || serverConfig.getCommand().isEmpty()) {
+                throw new IllegalArgumentException("Command is required for stdio server: " + serverConfig.getName());
+            }
+
+            ProcessBuilder builder = new ProcessBuilder(serverConfig.getCommand());
+            if (serverConfig.getEnvironment() != null) {
+                builder.environment().putAll(serverConfig.getEnvironment());
+            }
+            if (serverConfig.getWorkingDirectory() != null) {
+                builder.directory(new File(serverConfig.getWorkingDirectory()));
+            }
+
+            this.serverId = serverConfig.getId();
+            this.pending = new McpPendingRequests(serverId, mcpConfig.getChannel().getMaxInFlight(), this::cancel,
+                    message -> notifications.emitNext(new McpServerNotification(serverId, message),
+                            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100))));
+            this.process = builder.start();
+            this.stdin = new BufferedWriter(new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8));
+
+            log.info("Started MCP server process for {} (pid: {}): {}",
+                    serverConfig.getName(), process.pid(), String.join(" ", serverConfig.getCommand()));
+
+            Thread.ofVirtual().name("mcp-stdio-out-" + serverId).start(this::readStdout);
+            Thread.ofVirtual().name("mcp-stdio-err-" + serverId).start(this::readStderr);
+        }
+
+        synchronized void write(String line) throws IOException {
+            stdin.write(line);
+            stdin.write('\n');
+            stdin.flush();
+        }
+
+        private void cancel(JsonNode requestId) {
+            try {
+                write(McpPendingRequests.cancelledNotification(requestId));
+            } catch (IOException e) {
+                log.debug("Failed to cancel request {} on MCP server {}: {}", requestId, serverId, e.getMessage());
+            }
+        }
+
+        void destroy() {
+            process.destroy();
+        }
+
+        private void readStdout() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    try {
+                        pending.route(messageReader.read(line));
+                    } catch (IOException e) {
+                        log.warn("Ignoring non JSON-RPC output of MCP server {}: {}", serverId, line);
+                    }
+                }
+            } catch (IOException e) {
+                log.warn("Lost stdout of MCP server process {}: {}", serverId, e.getMessage());
+            } finally {
+                pending.failAll(new IllegalStateException("MCP server process exited: " + serverId));
+                if (processes.remove(serverId, this)) {
+                    // Sessions were initialized on this process; the next one has to be initialized again
+                    sessionManager.remove(serverId);
+                }
+                log.info("MCP server process {} exited", serverId);
+            }
+        }
+
+        private void readStderr() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getErrorStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    log.debug("[{}] {}", serverId, line);
+                }
+            } catch (IOException e) {
+                // process is gone
+            }
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpTool;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Renders MCP tool definitions for the model's function list.
+ * The compact form trims descriptions to their leading sentences, drops example lists and schema keywords
+ * that carry no information for the model ($schema, title, examples, ...), and removes sentences that only
+ * list the enum values when the enum already states them. Renderings are cached per tool instance, so a tool
+ * is rendered once per catalog version rather than on every function-calling iteration.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpToolRenderer {
+
+    private static final Set<String> REDUNDANT_KEYWORDS = Set.of("$schema", "$id", "$comment", "title", "examples", "example");
+    private static final Pattern EXAMPLE_LIST = Pattern.compile("\\s*\\((?:e\\.g\\.|eg\\.|for example|examples?:)[^)]*\\)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern EXAMPLE_SENTENCE = Pattern.compile("^(?:e\\.g\\.|for example|examples?\\b|such as)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?])\\s+");
+    // A period after these (or after initials like "U.S.") does not end a sentence
+    private static final Set<String> ABBREVIATIONS = Set.of("e.g.", "eg.", "i.e.", "ie.", "etc.", "vs.", "cf.", "al.",
+            "approx.", "incl.", "excl.", "esp.", "resp.", "min.", "max.", "avg.", "no.", "nr.", "dr.", "mr.", "mrs.", "st.");
+    private static final Pattern INITIALS = Pattern.compile("(?:\\p{L}\\.){2,}");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern WORD = Pattern.compile("[\\p{L}\\p{N}]+");
+    // Words of a sentence that lists enum values: "One of: a, b or c", "Allowed values are a and b"
+    private static final Set<String> LISTING_WORDS = Set.of("one", "of", "or", "and", "either", "is", "are", "be",
+            "can", "must", "the", "value", "values", "allowed", "possible", "valid", "supported", "options", "accepted");
+
+    private final ObjectMapper objectMapper;
+    private final McpConfig mcpConfig;
+    private final Map<String, Cached> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Tool definition as sent to the model, with its estimated token cost
+     */
+    public record RenderedTool(String name, String description, JsonNode parameters, int tokens) {
+    }
+
+    public boolean isCompact() {
+        return mcpConfig.getSchema().getRendering() == McpConfig.Schema.Rendering.COMPACT;
+    }
+
+    /**
+     * Render a tool in the configured form (mcp.schema.rendering)
+     */
+    public RenderedTool render(McpTool tool) {
+        return isCompact() ? compact(tool) : verbatim(tool);
+    }
+
+    public RenderedTool verbatim(McpTool tool) {
+        JsonNode parameters = objectMapper.valueToTree(tool.getInputSchema());
+        return new RenderedTool(tool.getName(), tool.getDescription(), parameters,
+                countTokens(tool.getName(), tool.getDescription(), parameters));
+    }
+
+    public RenderedTool compact(McpTool tool) {
+        Cached cached = cache.get(tool.getName());
+        if (cached != null && cached.source() == tool) {
+            return cached.rendered();
+        }
+
+        McpConfig.Schema schema = mcpConfig.getSchema();
+        String description = trimDescription(tool.getDescription(), schema.getMaxDescriptionLength());
+        JsonNode parameters = objectMapper.valueToTree(tool.getInputSchema());
+        if (parameters instanceof ObjectNode object) {
+            compactSchema(object, schema.getMaxPropertyDescriptionLength(), true);
+        }
+
+        RenderedTool rendered = new RenderedTool(tool.getName(), description, parameters,
+                countTokens(tool.getName(), description, parameters));
+        cache.put(tool.getName(), new Cached(tool, rendered));
+        return rendered;
+    }
+
+    /**
+     * Approximate BPE token count (cl100k-like): words cost one token per ~4 characters,
+     * every punctuation character costs one token. No tokenizer is bundled, so this is an estimate
+     * meant for comparing renderings, not for billing.
+     */
+    public static int estimateTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int word = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                word++;
+                continue;
+            }
+            tokens += (word + 3) / 4;
+            word = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + (word + 3) / 4;
+    }
+
+    private static int countTokens(String name, String description, JsonNode parameters) {
+        return estimateTokens(name) + estimateTokens(description) + estimateTokens(parameters.toString());
+    }
+
+    /**
+     * @param root the parameters schema itself: its properties are kept even when empty, as
+     *             {"type":"object","properties":{}} is what strict function-calling validators expect of a tool
+     *             without arguments
+     */
+    private void compactSchema(ObjectNode schema, int maxDescriptionLength, boolean root) {
+        schema.remove(REDUNDANT_KEYWORDS);
+
+        JsonNode enumValues = schema.get("enum");
+        JsonNode description = schema.get("description");
+        if (description != null && description.isTextual()) {
+            String text = trimDescription(withoutEnumDocs(description.asText(), enumValues), maxDescriptionLength);
+            if (text.isEmpty()) {
+                schema.remove("description");
+            } else {
+                schema.put("description", text);
+            }
+        }
+
+        if (schema.get("properties") instanceof ObjectNode properties) {
+            if (properties.isEmpty() && !root) {
+                schema.remove("properties");
+            }
+            properties.forEach(property -> {
+                if (property instanceof ObjectNode child) {
+                    compactSchema(child, maxDescriptionLength, false);
+                }
+            });
+        }
+        if (schema.get("items") instanceof ObjectNode items) {
+            compactSchema(items, maxDescriptionLength, false);
+        }
+        if (schema.get("required") instanceof ArrayNode required && required.isEmpty()) {
+            schema.remove("required");
+        }
+    }
+
+    /**
+     * Drop the sentences of a description that only list the enum values: at least two values, matched as
+     * whole words, and nothing else but listing words ("One of: C, F"). A sentence that says more
+     * ("Temperature unit, C or F") is kept.
+     */
+    static String withoutEnumDocs(String description, JsonNode enumValues) {
+        if (enumValues == null || !enumValues.isArray() || enumValues.size() < 2) {
+            return description;
+        }
+
+        List<Pattern> values = new ArrayList<>();
+        for (Iterator<JsonNode> it = enumValues.elements(); it.hasNext(); ) {
+            String value = it.next().asText();
+            if (!value.isBlank()) {
+                values.add(Pattern.compile("(?<![\\p{L}\\p{N}_])" + Pattern.quote(value) + "(?![\\p{L}\\p{N}_])"));
+            }
+        }
+
+        List<String> kept = new ArrayList<>();
+        for (String sentence : sentences(description.trim())) {
+            if (!isEnumListing(sentence, values)) {
+                kept.add(sentence);
+            }
+        }
+        return String.join(" ", kept);
+    }
+
+    private static boolean isEnumListing(String sentence, List<Pattern> values) {
+        int mentioned = 0;
+        String rest = sentence;
+        for (Pattern value : values) {
+            Matcher matcher = value.matcher(rest);
+            if (matcher.find()) {
+                mentioned++;
+                rest = matcher.replaceAll(" ");
+            }
+        }
+        if (mentioned < 2) {
+            return false;
+        }
+
+        Matcher word = WORD.matcher(rest);
+        while (word.find()) {
+            if (!LISTING_WORDS.contains(word.group().toLowerCase(Locale.ROOT))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Collapse whitespace, drop example lists and keep whole leading sentences up to the length limit
+     * (the first sentence is always kept)
+     */
+    static String trimDescription(String description, int maxLength) {
+        if (description == null) {
+            return null;
+        }
+
+        String text = WHITESPACE.matcher(EXAMPLE_LIST.matcher(description).replaceAll("")).replaceAll(" ").trim();
+        StringBuilder result = new StringBuilder();
+        for (String sentence : sentences(text)) {
+            if (EXAMPLE_SENTENCE.matcher(sentence).find()) {
+                continue;
+            }
+            if (!result.isEmpty() && result.length() + 1 + sentence.length() > maxLength) {
+                break;
+            }
+            if (!result.isEmpty()) {
+                result.append(' ');
+            }
+            result.append(sentence);
+        }
+        return result.toString();
+    }
+
+    /**
+     * Split text into sentences at terminal punctuation followed by whitespace, except after a known
+     * abbreviation or initials, or when the next word starts in lower case ("approx. 5 km", "e.g. the")
+     */
+    static List<String> sentences(String text) {
+        List<String> sentences = new ArrayList<>();
+        Matcher boundary = SENTENCE_END.matcher(text);
+        int start = 0;
+        while (boundary.find()) {
+            if (isSentenceEnd(text, boundary.start(), boundary.end())) {
+                sentences.add(text.substring(start, boundary.start()));
+                start = boundary.end();
+            }
+        }
+        if (start < text.length()) {
+            sentences.add(text.substring(start));
+        }
+        return sentences;
+    }
+
+    /**
+     * @param end  index just past the punctuation
+     * @param next index of the first character after the whitespace
+     */
+    private static boolean isSentenceEnd(String text, int end, int next) {
+        if (next < text.length() && Character.isLowerCase(text.charAt(next))) {
+            return false;
+        }
+        if (text.charAt(end - 1) != '.') {
+            return true;
+        }
+        int wordStart = end;
+        while (wordStart > 0 && !Character.isWhitespace(text.charAt(wordStart - 1)) && text.charAt(wordStart - 1) != '(') {
+            wordStart--;
+        }
+        String word = text.substring(wordStart, end).toLowerCase(Locale.ROOT);
+        return !ABBREVIATIONS.contains(word) && !INITIALS.matcher(word).matches();
+    }
+
+    private record Cached(McpTool source, RenderedTool rendered) {
+    }
+}
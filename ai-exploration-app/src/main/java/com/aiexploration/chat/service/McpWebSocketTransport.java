@@ -0,0 +1,178 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.client.ReactorNettyWebSocketClient;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.client.WebsocketClientSpec;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * WebSocket transport: one long-lived multiplexed connection per server.
+ * Requests are written as text messages as soon as they are issued, responses arrive in any order
+ * and are matched by id (see {@link McpPendingRequests}), so a single connection carries any number
+ * of concurrent calls up to mcp.channel.max-in-flight. A closed connection fails its pending requests
+ * and is reopened on the next request.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpWebSocketTransport {
+
+    private static final int MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    private final McpMessageReader messageReader;
+    private final McpConfig mcpConfig;
+    private final Map<String, Channel> channels = new ConcurrentHashMap<>();
+    private final Sinks.Many<McpServerNotification> notifications = Sinks.many().multicast().directBestEffort();
+
+    /**
+     * Send a JSON-RPC message (or batch) and emit every message routed to it: the response for each
+     * request id and notifications/progress whose progressToken is one of those ids.
+     */
+    public Flux<JsonNode> exchange(McpServerConfig serverConfig, JsonNode message) {
+        return Flux.defer(() -> {
+                    Channel channel = channelFor(serverConfig);
+                    Flux<JsonNode> responses = channel.pending.register(message);
+
+                    String text = message.toString();
+                    log.debug("Sending JSON-RPC message to WebSocket server {}: {}", serverConfig.getName(), text);
+                    channel.send(text);
+
+                    return responses;
+                })
+                .timeout(Duration.ofMillis(mcpConfig.getRequest().getTimeout()));
+    }
+
+    /**
+     * Server-initiated notifications that do not belong to a pending request (e.g. notifications/tools/list_changed)
+     */
+    public Flux<McpServerNotification> notifications() {
+        return notifications.asFlux();
+    }
+
+    /**
+     * Close the connection of a server
+     */
+    public void release(String serverId) {
+        Channel channel = channels.remove(serverId);
+        if (channel != null) {
+            channel.close();
+            log.info("Closed WebSocket connection to MCP server: {}", serverId);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.keySet().forEach(this::release);
+    }
+
+    private Channel channelFor(McpServerConfig serverConfig) {
+        Channel channel = channels.compute(serverConfig.getId(), (id, existing) -> {
+            if (existing != null && existing.open && existing.url.equals(serverConfig.getUrl())) {
+                return existing;
+            }
+            if (existing != null) {
+                existing.close();
+            }
+            return new Channel(serverConfig);
+        });
+        channel.connect();
+        return channel;
+    }
+
+    private final class Channel {
+
+        private final String serverId;
+        private final String url;
+        private final McpPendingRequests pending;
+        private final Sinks.Many<String> outbound = Sinks.many().unicast().onBackpressureBuffer();
+        private final McpServerConfig serverConfig;
+        private Disposable connection;
+        private volatile boolean open = true;
+
+        Channel(McpServerConfig serverConfig) {
+            this.serverConfig = serverConfig;
+            this.serverId = serverConfig.getId();
+            this.url = serverConfig.getUrl();
+            this.pending = new McpPendingRequests(serverId, mcpConfig.getChannel().getMaxInFlight(),
+                    requestId -> send(McpPendingRequests.cancelledNotification(requestId)),
+                    message -> notifications.emitNext(new McpServerNotification(serverId, message),
+                            Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100))));
+        }
+
+        synchronized void connect() {
+            if (connection != null) {
+                return;
+            }
+
+            HttpHeaders headers = new HttpHeaders();
+            if (serverConfig.getHeaders() != null) {
+                serverConfig.getHeaders().forEach(headers::add);
+            }
+
+            HttpClient httpClient = HttpClient.create()
+                    .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, mcpConfig.getConnection().getTimeout());
+            ReactorNettyWebSocketClient client = new ReactorNettyWebSocketClient(httpClient,
+                    () -> WebsocketClientSpec.builder().maxFramePayloadLength(MAX_MESSAGE_SIZE));
+
+            // Messages written before the handshake completes are buffered by the outbound sink
+            this.connection = client.execute(URI.create(url), headers, session -> {
+                        log.info("Connected to MCP server {} over WebSocket: {}", serverConfig.getName(), url);
+                        Mono<Void> send = session.send(outbound.asFlux().map(session::textMessage));
+                        Mono<Void> receive = session.receive()
+                                .map(WebSocketMessage::getPayloadAsText)
+                                .doOnNext(this::receive)
+                                .then();
+                        return Mono.firstWithSignal(send, receive);
+                    })
+                    .doFinally(signal -> closed())
+                    .subscribe(null, e -> log.warn("WebSocket connection to MCP server {} failed: {}",
+                            serverConfig.getName(), e.getMessage()));
+        }
+
+        void send(String text) {
+            outbound.emitNext(text, Sinks.EmitFailureHandler.busyLooping(Duration.ofMillis(100)));
+        }
+
+        synchronized void close() {
+            open = false;
+            outbound.tryEmitComplete();
+            if (connection != null) {
+                connection.dispose();
+            }
+        }
+
+        private void receive(String text) {
+            try {
+                pending.route(messageReader.read(text));
+            } catch (IOException e) {
+                log.warn("Ignoring invalid message from MCP server {}: {}", serverId, e.getMessage());
+            }
+        }
+
+        private void closed() {
+            open = false;
+            pending.failAll(new IllegalStateException("WebSocket connection to MCP server closed: " + serverId));
+            channels.remove(serverId, this);
+            log.info("WebSocket connection to MCP server {} closed", serverId);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.aiexploration.chat.service;
 import com.aiexploration.chat.model.ChatRequest;
 import com.aiexploration.chat.model.ChatResponse;
 import com.aiexploration.chat.model.ToolCallInfo;
+import com.aiexploration.chat.model.mcp.McpToolResult;
 import io.github.sashirestela.openai.SimpleOpenAI;
 import io.github.sashirestela.openai.domain.chat.Chat;
 import io.github.sashirestela.openai.domain.chat.ChatMessage;
@@ -260,6 +261,11 @@ public class OpenAIService implements AIService {
             return "null";
         }
 
+        // MCP result: text content is read straight from the raw JSON
+        if (result instanceof McpToolResult toolResult) {
+            return toolResult.getText();
+        }
+
         // If MCP result with content array
         if (result instanceof Map) {
             Map<?, ?> map = (Map<?, ?>) result;
@@ -0,0 +1,158 @@
+package com.aiexploration.chat.service;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Incremental text/event-stream parser.
+ * Events are dispatched as soon as their terminating blank line arrives, so multi-event
+ * streams work and callers can react before the server closes the stream.
+ * Not thread-safe: use one reader per stream.
+ */
+public class SseEventReader {
+
+    private static final String DEFAULT_EVENT_TYPE = "message";
+
+    private final ByteArrayOutputStream line = new ByteArrayOutputStream(256);
+    private final StringBuilder data = new StringBuilder();
+    private boolean hasData;
+    private String eventType;
+    private String lastEventId;
+    private boolean skipLineFeed;
+
+    /**
+     * Parse a streamed response body, emitting every event as soon as it is complete
+     */
+    public static Flux<Event> read(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            SseEventReader reader = new SseEventReader();
+            return body
+                    .concatMapIterable(buffer -> {
+                        try {
+                            return reader.feed(buffer);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .concatWith(Flux.defer(() -> Flux.fromIterable(reader.finish())));
+        });
+    }
+
+    /**
+     * Parse a blocking stream, handing every event to the listener as soon as it is complete
+     */
+    public static void read(InputStream inputStream, Consumer<Event> listener) throws IOException {
+        SseEventReader reader = new SseEventReader();
+        byte[] chunk = new byte[8192];
+        int read;
+        while ((read = inputStream.read(chunk)) != -1) {
+            reader.feed(chunk, 0, read).forEach(listener);
+        }
+        reader.finish().forEach(listener);
+    }
+
+    public List<Event> feed(DataBuffer buffer) {
+        byte[] bytes = new byte[buffer.readableByteCount()];
+        buffer.read(bytes);
+        return feed(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Feed the next chunk of the stream and return the events it completed
+     */
+    public List<Event> feed(byte[] bytes, int offset, int length) {
+        List<Event> events = new ArrayList<>(1);
+        for (int i = offset; i < offset + length; i++) {
+            byte b = bytes[i];
+
+            // CRLF is one line terminator
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (b == '\n') {
+                    continue;
+                }
+            }
+
+            if (b == '\n' || b == '\r') {
+                skipLineFeed = b == '\r';
+                processLine(line.toString(StandardCharsets.UTF_8), events);
+                line.reset();
+            } else {
+                line.write(b);
+            }
+        }
+        return events;
+    }
+
+    /**
+     * Signal end of stream and return a trailing event that was not terminated by a blank line
+     */
+    public List<Event> finish() {
+        List<Event> events = new ArrayList<>(1);
+        if (line.size() > 0) {
+            processLine(line.toString(StandardCharsets.UTF_8), events);
+            line.reset();
+        }
+        dispatch(events);
+        return events;
+    }
+
+    private void processLine(String text, List<Event> events) {
+        if (text.isEmpty()) {
+            dispatch(events);
+            return;
+        }
+
+        // Comment line (keep-alive)
+        if (text.startsWith(":")) {
+            return;
+        }
+
+        int colon = text.indexOf(':');
+        String field = colon >= 0 ? text.substring(0, colon) : text;
+        String value = colon >= 0 ? text.substring(colon + 1) : "";
+        if (value.startsWith(" ")) {
+            value = value.substring(1);
+        }
+
+        switch (field) {
+            case "data" -> {
+                if (hasData) {
+                    data.append('\n');
+                }
+                data.append(value);
+                hasData = true;
+            }
+            case "event" -> eventType = value;
+            case "id" -> {
+                if (value.indexOf('\0') < 0) {
+                    lastEventId = value;
+                }
+            }
+            default -> {
+                // "retry" and unknown fields are ignored
+            }
+        }
+    }
+
+    private void dispatch(List<Event> events) {
+        if (hasData) {
+            events.add(new Event(lastEventId, eventType != null ? eventType : DEFAULT_EVENT_TYPE, data.toString()));
+        }
+        data.setLength(0);
+        hasData = false;
+        eventType = null;
+    }
+
+    public record Event(String id, String event, String data) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.aiexploration.chat.model.mcp.McpToolExecutionRequest;
+import com.aiexploration.chat.model.mcp.McpToolExecutionResponse;
+import com.aiexploration.chat.model.mcp.McpToolResult;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpClientTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final McpConfig config = new McpConfig();
+    private final McpMessageReader messageReader = new McpMessageReader(MAPPER);
+    private final McpSessionManager sessions = new McpSessionManager(config);
+    private final McpStdioTransport stdio = new McpStdioTransport(messageReader, config, sessions);
+    private final McpClient client = new McpClient(MAPPER, new McpHttpTransport(config), stdio,
+            new McpWebSocketTransport(messageReader, config), sessions, new McpReplicaBalancer(config),
+            messageReader, new McpCodec(MAPPER, config), config);
+
+    private final McpServerConfig server = McpServerConfig.builder()
+            .id("fake")
+            .name("fake")
+            .transport(McpServerConfig.Transport.STDIO)
+            .command(List.of(ProcessHandle.current().info().command().orElse("java"),
+                    "-cp", System.getProperty("java.class.path"), FakeServer.class.getName()))
+            .build();
+
+    @AfterEach
+    void stop() {
+        stdio.shutdown();
+    }
+
+    @Test
+    void overloadedBatchItemsAreRetried() {
+        List<McpToolExecutionResponse> responses = callTools("ok", "busy", "ok");
+
+        assertThat(responses).extracting(McpClientTest::text)
+                .containsExactly("ok attempt 1", "busy attempt 2", "ok attempt 2");
+    }
+
+    @Test
+    void retriesStopAtMaxRetries() {
+        config.getRequest().setMaxRetries(2);
+
+        List<McpToolExecutionResponse> responses = callTools("ok", "down");
+
+        assertThat(responses.get(0).isSuccess()).isTrue();
+        assertThat(responses.get(1).isSuccess()).isFalse();
+        assertThat(responses.get(1).getError()).isEqualTo("down overloaded, attempt 3");
+        assertThat(responses.get(1).getMetadata()).containsEntry("retryable", true).containsEntry("retryAfterMs", 10L);
+    }
+
+    @Test
+    void otherErrorsAreNotRetried() {
+        List<McpToolExecutionResponse> responses = callTools("busy", "broken");
+
+        assertThat(text(responses.get(0))).isEqualTo("busy attempt 2");
+        assertThat(responses.get(1).getError()).isEqualTo("broken failed, attempt 1");
+    }
+
+    private List<McpToolExecutionResponse> callTools(String... tools) {
+        List<McpToolExecutionRequest> requests = Arrays.stream(tools)
+                .map(tool -> McpToolExecutionRequest.builder().toolName(tool).build())
+                .toList();
+        return client.callTools(server, requests).block(Duration.ofSeconds(10));
+    }
+
+    private static String text(McpToolExecutionResponse response) {
+        assertThat(response.isSuccess()).as("failed: %s", response.getError()).isTrue();
+        return ((McpToolResult) response.getContent()).getText();
+    }
+
+    /**
+     * MCP server answering batches: "busy" is overloaded on the first call, "down" always,
+     * "broken" fails with a regular error; every tool reports how often it was called
+     */
+    public static final class FakeServer {
+
+        public static void main(String[] args) throws Exception {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            Map<String, Integer> attempts = new HashMap<>();
+            String line;
+            while ((line = in.readLine()) != null) {
+                JsonNode message = MAPPER.readTree(line);
+                if (!message.isArray()) {
+                    ObjectNode response = response(message);
+                    response.putObject("result");
+                    System.out.println(response);
+                    System.out.flush();
+                    continue;
+                }
+
+                ArrayNode responses = MAPPER.createArrayNode();
+                for (JsonNode request : message) {
+                    String tool = request.path("params").path("name").asText();
+                    int attempt = attempts.merge(tool, 1, Integer::sum);
+                    ObjectNode response = response(request);
+                    if (tool.equals("down") || tool.equals("busy") && attempt == 1) {
+                        ObjectNode error = response.putObject("error")
+                                .put("code", -32000)
+                                .put("message", tool + " overloaded, attempt " + attempt);
+                        error.putObject("data").put("retryable", true).put("retryAfterMs", 10);
+                    } else if (tool.equals("broken")) {
+                        response.putObject("error").put("code", -32603).put("message", tool + " failed, attempt " + attempt);
+                    } else {
+                        response.putObject("result").putArray("content").addObject()
+                                .put("type", "text")
+                                .put("text", tool + " attempt " + attempt);
+                    }
+                    responses.add(response);
+                }
+                System.out.println(responses);
+                System.out.flush();
+            }
+        }
+
+        private static ObjectNode response(JsonNode request) {
+            ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0");
+            response.set("id", request.get("id"));
+            return response;
+        }
+    }
+}
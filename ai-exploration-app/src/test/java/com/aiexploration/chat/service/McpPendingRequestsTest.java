@@ -0,0 +1,225 @@
+package com.aiexploration.chat.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class McpPendingRequestsTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final List<JsonNode> cancelled = new CopyOnWriteArrayList<>();
+    private final List<JsonNode> unrouted = new CopyOnWriteArrayList<>();
+
+    @Test
+    void completesRequestsOutOfOrder() {
+        McpPendingRequests pending = pending(10);
+        Flux<JsonNode> first = pending.register(json("{\"jsonrpc\":\"2.0\",\"id\":1,\"method\":\"tools/call\"}"));
+        Flux<JsonNode> second = pending.register(json("{\"jsonrpc\":\"2.0\",\"id\":2,\"method\":\"tools/call\"}"));
+
+        pending.route(json("{\"jsonrpc\":\"2.0\",\"id\":2,\"result\":\"two\"}"));
+        pending.route(json("{\"jsonrpc\":\"2.0\",\"id\":1,\"result\":\"one\"}"));
+
+        assertThat(result(first)).isEqualTo("one");
+        assertThat(result(second)).isEqualTo("two");
+        assertThat(pending.inFlight()).isZero();
+    }
+
+    @Test
+    void routesBatchResponses() {
+        McpPendingRequests pending = pending(10);
+        Flux<JsonNode> batch = pending.register(json("[{\"id\":1,\"method\":\"a\"},{\"method\":\"n\"},{\"id\":2,\"method\":\"b\"}]"));
+
+        pending.route(json("[{\"id\":2,\"result\":\"b\"},{\"id\":1,\"result\":\"a\"}]"));
+
+        assertThat(batch.map(message -> message.get("result").asText()).collectList().block(Duration.ofSeconds(1)))
+                .containsExactlyInAnyOrder("a", "b");
+    }
+
+    @Test
+    void matchesIdsByType() {
+        McpPendingRequests pending = pending(10);
+        Flux<JsonNode> numeric = pending.register(json("{\"id\":1,\"method\":\"ping\"}"));
+
+        pending.route(json("{\"id\":\"1\",\"result\":\"string id\"}"));
+        assertThat(pending.inFlight()).isEqualTo(1);
+
+        pending.route(json("{\"id\":1,\"result\":\"numeric id\"}"));
+        assertThat(result(numeric)).isEqualTo("numeric id");
+    }
+
+    @Test
+    void routesProgressToItsRequest() {
+        McpPendingRequests pending = pending(10);
+        Flux<JsonNode> call = pending.register(json("{\"id\":5,\"method\":\"tools/call\",\"params\":{\"_meta\":{\"progressToken\":5}}}"));
+
+        pending.route(json("{\"method\":\"notifications/progress\",\"params\":{\"progressToken\":5,\"progress\":1}}"));
+        pending.route(json("{\"method\":\"notifications/tools/list_changed\"}"));
+        pending.route(json("{\"id\":5,\"result\":{}}"));
+
+        List<JsonNode> messages = call.collectList().block(Duration.ofSeconds(1));
+        assertThat(messages).hasSize(2);
+        assertThat(messages.get(0).get("method").asText()).isEqualTo("notifications/progress");
+        assertThat(unrouted).extracting(message -> message.get("method").asText())
+                .containsExactly("notifications/tools/list_changed");
+    }
+
+    @Test
+    void rejectsRequestsOverTheCap() {
+        McpPendingRequests pending = pending(2);
+        pending.register(json("{\"id\":1,\"method\":\"a\"}"));
+        pending.register(json("{\"id\":2,\"method\":\"b\"}"));
+
+        assertThatThrownBy(() -> pending.register(json("{\"id\":3,\"method\":\"c\"}")))
+                .isInstanceOf(McpException.class)
+                .hasMessageContaining("Too many requests in flight");
+
+        // A completed request frees its slot
+        pending.route(json("{\"id\":1,\"result\":null}"));
+        pending.register(json("{\"id\":3,\"method\":\"c\"}"));
+        assertThat(pending.inFlight()).isEqualTo(2);
+    }
+
+    @Test
+    void rejectsBatchThatDoesNotFitAsAWhole() {
+        McpPendingRequests pending = pending(2);
+        pending.register(json("{\"id\":1,\"method\":\"a\"}"));
+
+        assertThatThrownBy(() -> pending.register(json("[{\"id\":2,\"method\":\"b\"},{\"id\":3,\"method\":\"c\"}]")))
+                .isInstanceOf(McpException.class);
+        assertThat(pending.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void capHoldsUnderConcurrentRegistration() throws InterruptedException {
+        int maxInFlight = 16;
+        int threads = 8;
+        int attemptsPerThread = 50;
+        McpPendingRequests pending = pending(maxInFlight);
+        AtomicInteger accepted = new AtomicInteger();
+        AtomicInteger ids = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            executor.execute(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < attemptsPerThread; i++) {
+                    try {
+                        pending.register(json("{\"id\":" + ids.incrementAndGet() + ",\"method\":\"a\"}"));
+                        accepted.incrementAndGet();
+                    } catch (McpException e) {
+                        // over the cap
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(accepted.get()).isEqualTo(maxInFlight);
+        assertThat(pending.inFlight()).isEqualTo(maxInFlight);
+    }
+
+    @Test
+    void cancellingSendsTheOriginalIdAndFreesTheSlot() {
+        McpPendingRequests pending = pending(1);
+        Disposable subscription = pending.register(json("{\"id\":42,\"method\":\"tools/call\"}")).subscribe();
+
+        subscription.dispose();
+
+        assertThat(cancelled).hasSize(1);
+        assertThat(cancelled.get(0).isNumber()).isTrue();
+        assertThat(cancelled.get(0).asInt()).isEqualTo(42);
+        assertThat(pending.inFlight()).isZero();
+
+        // The late response is dropped, the slot is available again
+        pending.route(json("{\"id\":42,\"result\":\"late\"}"));
+        pending.register(json("{\"id\":43,\"method\":\"tools/call\"}"));
+        assertThat(pending.inFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void completedRequestIsNotCancelled() {
+        McpPendingRequests pending = pending(10);
+        Flux<JsonNode> call = pending.register(json("{\"id\":1,\"method\":\"a\"}"));
+        pending.route(json("{\"id\":1,\"result\":\"done\"}"));
+
+        // next() cancels its source after the first element
+        assertThat(call.next().block(Duration.ofSeconds(1))).isNotNull();
+        assertThat(cancelled).isEmpty();
+    }
+
+    @Test
+    void cancelledNotificationKeepsIdType() {
+        JsonNode numeric = json(McpPendingRequests.cancelledNotification(json("7")));
+        JsonNode text = json(McpPendingRequests.cancelledNotification(json("\"7\"")));
+
+        assertThat(numeric.path("method").asText()).isEqualTo("notifications/cancelled");
+        assertThat(numeric.path("params").path("requestId").isNumber()).isTrue();
+        assertThat(text.path("params").path("requestId").isTextual()).isTrue();
+    }
+
+    @Test
+    void unregisterFreesSlots() {
+        McpPendingRequests pending = pending(2);
+        JsonNode batch = json("[{\"id\":1,\"method\":\"a\"},{\"id\":2,\"method\":\"b\"}]");
+        pending.register(batch);
+
+        pending.unregister(batch);
+
+        assertThat(pending.inFlight()).isZero();
+        assertThat(cancelled).isEmpty();
+    }
+
+    @Test
+    void failAllErrorsEveryWaiterAndFreesSlots() {
+        McpPendingRequests pending = pending(10);
+        List<Throwable> errors = new ArrayList<>();
+        pending.register(json("{\"id\":1,\"method\":\"a\"}")).subscribe(message -> { }, errors::add);
+        pending.register(json("{\"id\":2,\"method\":\"b\"}")).subscribe(message -> { }, errors::add);
+
+        pending.failAll(new IllegalStateException("closed"));
+
+        assertThat(errors).hasSize(2).allMatch(e -> "closed".equals(e.getMessage()));
+        assertThat(pending.inFlight()).isZero();
+        assertThat(cancelled).isEmpty();
+    }
+
+    private McpPendingRequests pending(int maxInFlight) {
+        return new McpPendingRequests("test", maxInFlight, cancelled::add, unrouted::add);
+    }
+
+    private static String result(Flux<JsonNode> responses) {
+        return responses.single().block(Duration.ofSeconds(1)).get("result").asText();
+    }
+
+    private static JsonNode json(String text) {
+        try {
+            return MAPPER.readTree(text);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpServerConfig;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpStdioTransportTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final McpMessageReader messageReader = new McpMessageReader(MAPPER);
+    private final McpConfig config = new McpConfig();
+    private final McpSessionManager sessions = new McpSessionManager(config);
+    private final McpStdioTransport transport = new McpStdioTransport(messageReader, config, sessions);
+    private final AtomicLong ids = new AtomicLong();
+    private final AtomicInteger initializations = new AtomicInteger();
+
+    private final McpServerConfig server = McpServerConfig.builder()
+            .id("fake")
+            .name("fake")
+            .transport(McpServerConfig.Transport.STDIO)
+            .command(List.of(ProcessHandle.current().info().command().orElse("java"),
+                    "-cp", System.getProperty("java.class.path"), FakeServer.class.getName()))
+            .build();
+
+    @AfterEach
+    void stop() {
+        transport.shutdown();
+    }
+
+    @Test
+    void callsRunOnAnInitializedProcess() {
+        long pid = call().get("pid").asLong();
+
+        assertThat(call().get("pid").asLong()).isEqualTo(pid);
+        assertThat(initializations).hasValue(1);
+    }
+
+    @Test
+    void respawnedProcessIsInitializedAgain() throws Exception {
+        long pid = call().get("pid").asLong();
+
+        ProcessHandle process = ProcessHandle.of(pid).orElseThrow();
+        process.destroyForcibly();
+        process.onExit().get(10, TimeUnit.SECONDS);
+
+        JsonNode result = call();
+        assertThat(result.get("pid").asLong()).isNotEqualTo(pid);
+        assertThat(initializations).hasValue(2);
+    }
+
+    @Test
+    void callOnAnUninitializedProcessIsReplayedAfterInitialize() {
+        long pid = call().get("pid").asLong();
+        // The process goes away without its exit reaching the session manager (a call racing the respawn):
+        // the session is still cached, the next request reaches a fresh process
+        transport.release(server.getId());
+
+        JsonNode result = call();
+        assertThat(result.get("pid").asLong()).isNotEqualTo(pid);
+        assertThat(initializations).hasValue(2);
+    }
+
+    /**
+     * tools/call on a pooled session; the fake server answers with its pid, or an error before initialize
+     */
+    private JsonNode call() {
+        JsonNode response = sessions.execute(server, initializer(), sessionId -> send("tools/call"))
+                .block(Duration.ofSeconds(10));
+        assertThat(response.has("error")).as("error response: %s", response).isFalse();
+        return messageReader.tree(response.get("result"));
+    }
+
+    private Function<McpServerConfig, Mono<McpSessionManager.Session>> initializer() {
+        return target -> {
+            initializations.incrementAndGet();
+            return send("initialize").map(response ->
+                    new McpSessionManager.Session(null, messageReader.tree(response.get("result"))));
+        };
+    }
+
+    private Mono<JsonNode> send(String method) {
+        ObjectNode request = MAPPER.createObjectNode()
+                .put("jsonrpc", "2.0")
+                .put("id", ids.incrementAndGet())
+                .put("method", method);
+        return transport.exchange(server, request).next();
+    }
+
+    /**
+     * Minimal MCP server that, as the specification requires, rejects requests before initialize
+     */
+    public static final class FakeServer {
+
+        public static void main(String[] args) throws Exception {
+            BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+            boolean initialized = false;
+            String line;
+            while ((line = in.readLine()) != null) {
+                JsonNode request = MAPPER.readTree(line);
+                if (!request.has("id")) {
+                    continue;
+                }
+                ObjectNode response = MAPPER.createObjectNode().put("jsonrpc", "2.0");
+                response.set("id", request.get("id"));
+                if ("initialize".equals(request.path("method").asText())) {
+                    initialized = true;
+                    response.putObject("result").put("pid", ProcessHandle.current().pid());
+                } else if (initialized) {
+                    response.putObject("result").put("pid", ProcessHandle.current().pid());
+                } else {
+                    response.putObject("error").put("code", -32002).put("message", "not initialized");
+                }
+                System.out.println(response);
+                System.out.flush();
+            }
+        }
+    }
+}
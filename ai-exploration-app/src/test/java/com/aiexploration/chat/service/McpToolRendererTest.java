@@ -0,0 +1,134 @@
+package com.aiexploration.chat.service;
+
+import com.aiexploration.chat.config.McpConfig;
+import com.aiexploration.chat.model.mcp.McpTool;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpToolRendererTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final McpToolRenderer renderer = new McpToolRenderer(MAPPER, new McpConfig());
+
+    @Test
+    void splitsSentencesAtTerminalPunctuation() {
+        assertThat(McpToolRenderer.sentences("Get the weather. Works offline! Why not?"))
+                .containsExactly("Get the weather.", "Works offline!", "Why not?");
+    }
+
+    @Test
+    void doesNotSplitAtAbbreviationsOrInitials() {
+        assertThat(McpToolRenderer.sentences("Cities, e.g. Moscow or Paris. Radius approx. 5 km. Data from the U.S. Weather Service."))
+                .containsExactly("Cities, e.g. Moscow or Paris.", "Radius approx. 5 km.", "Data from the U.S. Weather Service.");
+    }
+
+    @Test
+    void doesNotSplitBeforeALowerCaseWord() {
+        assertThat(McpToolRenderer.sentences("Speed in km. per hour. Next."))
+                .containsExactly("Speed in km. per hour.", "Next.");
+    }
+
+    @Test
+    void trimKeepsWholeLeadingSentences() {
+        String description = "Get current weather.  Uses Open-Meteo.\nResults are cached for an hour.";
+
+        assertThat(McpToolRenderer.trimDescription(description, 40)).isEqualTo("Get current weather. Uses Open-Meteo.");
+        assertThat(McpToolRenderer.trimDescription(description, 5)).isEqualTo("Get current weather.");
+        assertThat(McpToolRenderer.trimDescription(null, 5)).isNull();
+    }
+
+    @Test
+    void trimDropsExamples() {
+        assertThat(McpToolRenderer.trimDescription("City name (e.g. Berlin, Paris). For example: London. Required.", 200))
+                .isEqualTo("City name. Required.");
+    }
+
+    @Test
+    void dropsSentencesThatOnlyListTheEnum() {
+        JsonNode units = MAPPER.valueToTree(List.of("celsius", "fahrenheit"));
+
+        assertThat(McpToolRenderer.withoutEnumDocs("Temperature unit. One of: celsius, fahrenheit.", units))
+                .isEqualTo("Temperature unit.");
+        assertThat(McpToolRenderer.withoutEnumDocs("Allowed values are 'celsius' or 'fahrenheit'.", units))
+                .isEmpty();
+    }
+
+    @Test
+    void keepsSentencesThatMentionEnumValuesAmongOtherWords() {
+        JsonNode letters = MAPPER.valueToTree(List.of("C", "F"));
+        JsonNode digits = MAPPER.valueToTree(List.of("1", "2"));
+
+        assertThat(McpToolRenderer.withoutEnumDocs("Temperature unit, Celsius or Fahrenheit.", letters))
+                .isEqualTo("Temperature unit, Celsius or Fahrenheit.");
+        assertThat(McpToolRenderer.withoutEnumDocs("Temperature unit, C or F.", letters))
+                .isEqualTo("Temperature unit, C or F.");
+        assertThat(McpToolRenderer.withoutEnumDocs("Forecast for 12 or 24 hours.", digits))
+                .isEqualTo("Forecast for 12 or 24 hours.");
+        assertThat(McpToolRenderer.withoutEnumDocs("One of 1, 2.", digits)).isEmpty();
+    }
+
+    @Test
+    void compactSchemaDropsRedundantKeywordsAndEnumListings() {
+        McpTool tool = tool(Map.of(
+                "type", "object",
+                "$schema", "http://json-schema.org/draft-07/schema#",
+                "properties", Map.of("unit", Map.of(
+                        "type", "string",
+                        "title", "Unit",
+                        "enum", List.of("C", "F"),
+                        "description", "Temperature unit. One of C, F.")),
+                "required", List.of()));
+
+        JsonNode parameters = renderer.compact(tool).parameters();
+
+        assertThat(parameters.has("$schema")).isFalse();
+        assertThat(parameters.has("required")).isFalse();
+        assertThat(parameters.at("/properties/unit/title").isMissingNode()).isTrue();
+        assertThat(parameters.at("/properties/unit/description").asText()).isEqualTo("Temperature unit.");
+    }
+
+    @Test
+    void toolWithoutArgumentsKeepsItsPropertiesObject() {
+        JsonNode parameters = renderer.compact(tool(Map.of("type", "object", "properties", Map.of()))).parameters();
+
+        assertThat(parameters.toString()).isEqualTo("{\"type\":\"object\",\"properties\":{}}");
+    }
+
+    @Test
+    void compactRenderingIsCachedPerToolInstance() {
+        McpTool tool = tool(Map.of("type", "object", "properties", Map.of()));
+
+        assertThat(renderer.compact(tool)).isSameAs(renderer.compact(tool));
+        assertThat(renderer.compact(tool(Map.of("type", "object")))).isNotSameAs(renderer.compact(tool));
+    }
+
+    @Test
+    void estimatesTokens() {
+        assertThat(McpToolRenderer.estimateTokens(null)).isZero();
+        assertThat(McpToolRenderer.estimateTokens("")).isZero();
+        assertThat(McpToolRenderer.estimateTokens("get")).isEqualTo(1);
+        assertThat(McpToolRenderer.estimateTokens("weather")).isEqualTo(2);
+        assertThat(McpToolRenderer.estimateTokens("get weather")).isEqualTo(3);
+        assertThat(McpToolRenderer.estimateTokens("{\"a\":1}")).isEqualTo(7);
+    }
+
+    private static McpTool tool(Map<String, Object> inputSchema) {
+        // Map.of keeps no order; the schema is rebuilt with "type" first like a server would send it
+        Map<String, Object> ordered = new LinkedHashMap<>();
+        ordered.put("type", inputSchema.get("type"));
+        ordered.putAll(inputSchema);
+        return McpTool.builder()
+                .name("get_weather")
+                .description("Get the weather.")
+                .inputSchema(ordered)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.aiexploration.chat.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SseEventReaderTest {
+
+    @Test
+    void dispatchesEventOnBlankLine() {
+        SseEventReader reader = new SseEventReader();
+
+        assertThat(feed(reader, "event: progress\nid: 7\ndata: {\"a\":1}\n")).isEmpty();
+        List<SseEventReader.Event> events = feed(reader, "\n");
+
+        assertThat(events).containsExactly(new SseEventReader.Event("7", "progress", "{\"a\":1}"));
+    }
+
+    @Test
+    void joinsMultiLineDataAndDefaultsEventType() {
+        List<SseEventReader.Event> events = feed(new SseEventReader(), "data: first\ndata: second\n\n");
+
+        assertThat(events).containsExactly(new SseEventReader.Event(null, "message", "first\nsecond"));
+    }
+
+    @Test
+    void readsSeveralEventsFromOneChunk() {
+        List<SseEventReader.Event> events = feed(new SseEventReader(),
+                ": keep-alive\n\ndata: one\n\nevent: custom\ndata: two\n\n");
+
+        assertThat(events).extracting(SseEventReader.Event::data).containsExactly("one", "two");
+        assertThat(events).extracting(SseEventReader.Event::event).containsExactly("message", "custom");
+    }
+
+    @Test
+    void handlesChunkBoundariesMidEvent() {
+        String stream = "event: message\ndata: {\"jsonrpc\":\"2.0\",\"id\":1}\n\ndata: second\n\n";
+        byte[] bytes = stream.getBytes(StandardCharsets.UTF_8);
+        SseEventReader reader = new SseEventReader();
+
+        // One byte at a time: every field, line terminator and the blank line are split across chunks
+        List<SseEventReader.Event> events = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i++) {
+            List<SseEventReader.Event> completed = reader.feed(bytes, i, 1);
+            if (!completed.isEmpty()) {
+                // An event completes exactly on the byte of its terminating blank line
+                assertThat(bytes[i]).isEqualTo((byte) '\n');
+                assertThat(bytes[i - 1]).isEqualTo((byte) '\n');
+            }
+            events.addAll(completed);
+        }
+
+        assertThat(events).extracting(SseEventReader.Event::data)
+                .containsExactly("{\"jsonrpc\":\"2.0\",\"id\":1}", "second");
+    }
+
+    @Test
+    void treatsCrLfSplitAcrossChunksAsOneTerminator() {
+        SseEventReader reader = new SseEventReader();
+
+        assertThat(feed(reader, "data: a\r")).isEmpty();
+        // A lone \n here would be an empty line and dispatch "a" on its own
+        assertThat(feed(reader, "\ndata: b\r\n")).isEmpty();
+        List<SseEventReader.Event> events = feed(reader, "\r\n");
+
+        assertThat(events).extracting(SseEventReader.Event::data).containsExactly("a\nb");
+    }
+
+    @Test
+    void decodesMultiByteCharactersSplitAcrossChunks() {
+        byte[] bytes = "data: погода\n\n".getBytes(StandardCharsets.UTF_8);
+        int split = "data: по".getBytes(StandardCharsets.UTF_8).length + 1; // inside the "г"
+        SseEventReader reader = new SseEventReader();
+
+        List<SseEventReader.Event> events = new ArrayList<>(reader.feed(bytes, 0, split));
+        events.addAll(reader.feed(bytes, split, bytes.length - split));
+
+        assertThat(events).extracting(SseEventReader.Event::data).containsExactly("погода");
+    }
+
+    @Test
+    void finishDispatchesUnterminatedTrailingEvent() {
+        SseEventReader reader = new SseEventReader();
+
+        assertThat(feed(reader, "data: last")).isEmpty();
+
+        assertThat(reader.finish()).extracting(SseEventReader.Event::data).containsExactly("last");
+    }
+
+    @Test
+    void keepsLastEventIdAcrossEvents() {
+        List<SseEventReader.Event> events = feed(new SseEventReader(), "id: 3\ndata: one\n\ndata: two\n\n");
+
+        assertThat(events).extracting(SseEventReader.Event::id).containsExactly("3", "3");
+    }
+
+    @Test
+    void readsDataBufferFlux() {
+        DefaultDataBufferFactory factory = DefaultDataBufferFactory.sharedInstance;
+        Flux<DataBuffer> body = Flux.just("data: o", "ne\n", "\ndata: two\n\n", "data: tail")
+                .map(chunk -> factory.wrap(chunk.getBytes(StandardCharsets.UTF_8)));
+
+        List<SseEventReader.Event> events = SseEventReader.read(body).collectList().block();
+
+        assertThat(events).extracting(SseEventReader.Event::data).containsExactly("one", "two", "tail");
+    }
+
+    @Test
+    void readsInputStream() throws IOException {
+        List<SseEventReader.Event> events = new ArrayList<>();
+
+        SseEventReader.read(new ByteArrayInputStream("data: one\n\ndata: two\n\n".getBytes(StandardCharsets.UTF_8)),
+                events::add);
+
+        assertThat(events).extracting(SseEventReader.Event::data).containsExactly("one", "two");
+    }
+
+    private static List<SseEventReader.Event> feed(SseEventReader reader, String chunk) {
+        byte[] bytes = chunk.getBytes(StandardCharsets.UTF_8);
+        return reader.feed(bytes, 0, bytes.length);
+    }
+}
@@ -0,0 +1,34 @@
+package com.aiexploration.mcp.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "weather.cache")
+@Data
+public class CacheConfig {
+    private Geocoding geocoding = new Geocoding();
+    private Weather weather = new Weather();
+
+    @Data
+    public static class Geocoding {
+        private long maxSize = 10_000;
+        private Duration ttl = Duration.ofDays(7); // place names practically never move
+        private Duration negativeTtl = Duration.ofHours(1); // queries without results
+    }
+
+    @Data
+    public static class Weather {
+        private long maxSize = 10_000;
+        private double gridStep = 0.02; // degrees, about the cell size of the finest models behind best_match
+        private Duration currentInterval = Duration.ofMinutes(15); // when the response does not state current.interval
+        private Duration forecastInterval = Duration.ofHours(1);
+        private Duration staleTtl = Duration.ofHours(1); // how long past its update an entry is still served while refreshing
+        private int prefetchTop = 20; // most requested cells refreshed ahead of callers
+        private int popularityCapacity = 200; // cells counted by the popularity tracker
+        private Duration popularityWindow = Duration.ofMinutes(10); // counts are halved every window
+    }
+}
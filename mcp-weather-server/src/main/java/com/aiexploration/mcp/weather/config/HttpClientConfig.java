@@ -0,0 +1,22 @@
+package com.aiexploration.mcp.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "weather.http")
+@Data
+public class HttpClientConfig {
+    private int maxConnections = 64; // per host, above weather.upstream.max-limit
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+    private Duration maxIdleTime = Duration.ofSeconds(30); // below typical load balancer idle timeouts
+    private Duration maxLifeTime = Duration.ofMinutes(5); // lets DNS changes take effect
+    private Duration evictionInterval = Duration.ofSeconds(15);
+    private Duration connectTimeout = Duration.ofSeconds(3);
+    private Duration responseTimeout = Duration.ofSeconds(10);
+    private Duration dnsCacheTtl = Duration.ofMinutes(5);
+    private int warmupConnections = 2; // per host, opened at startup
+}
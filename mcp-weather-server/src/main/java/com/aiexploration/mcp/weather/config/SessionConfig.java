@@ -0,0 +1,18 @@
+package com.aiexploration.mcp.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "mcp.session")
+@Data
+public class SessionConfig {
+    private String secret; // HMAC key shared by all replicas; a random per-process key when empty
+    private Duration maxAge = Duration.ofHours(24); // lifetime of a session token
+    private Duration idleTimeout = Duration.ofMinutes(30); // a session without requests is no longer counted as active
+    private long maxTracked = 100_000; // bound of the active session set
+    private long maxTerminated = 100_000; // terminated sessions remembered; DELETE is refused while this many are
+}
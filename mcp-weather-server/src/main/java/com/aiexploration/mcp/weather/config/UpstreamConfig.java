@@ -0,0 +1,21 @@
+package com.aiexploration.mcp.weather.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+@ConfigurationProperties(prefix = "weather.upstream")
+@Data
+public class UpstreamConfig {
+    private int initialLimit = 10; // concurrent Open-Meteo requests before any samples
+    private int minLimit = 1;
+    private int maxLimit = 50;
+    private int maxQueue = 50; // callers waiting for a free slot; more are rejected at once
+    private Duration maxWait = Duration.ofSeconds(1); // longest wait for a slot
+    private double latencyTolerance = 2.0; // latency above this multiple of the baseline counts as congestion
+    private double backoffRatio = 0.9; // limit multiplier on congestion or overload errors
+    private Duration retryAfter = Duration.ofSeconds(1); // hint given to clients when overloaded
+}
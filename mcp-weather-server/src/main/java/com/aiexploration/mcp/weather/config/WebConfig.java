@@ -1,20 +1,66 @@
 package com.aiexploration.mcp.weather.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.ChannelOption;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
 @Configuration
-public class WebConfig {
+public class WebConfig implements WebFluxConfigurer {
 
     @Bean
     public ObjectMapper objectMapper() {
         return new ObjectMapper();
     }
 
+    /**
+     * Binary alternatives to JSON for the /mcp endpoint, registered with WebFlux's codecs.
+     * Clients opt in with Content-Type/Accept application/cbor or application/x-jackson-smile.
+     */
+    @Override
+    public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+        configurer.customCodecs().register(new Jackson2CborDecoder());
+        configurer.customCodecs().register(new Jackson2CborEncoder());
+        configurer.customCodecs().register(new Jackson2SmileDecoder());
+        configurer.customCodecs().register(new Jackson2SmileEncoder());
+    }
+
+    /**
+     * Connection pool for Open-Meteo with idle and lifetime eviction and Micrometer metrics
+     * (reactor.netty.connection.provider.*), closed with the context
+     */
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider openMeteoConnectionProvider(HttpClientConfig config) {
+        return ConnectionProvider.builder("open-meteo")
+                .maxConnections(config.getMaxConnections())
+                .pendingAcquireTimeout(config.getPendingAcquireTimeout())
+                .maxIdleTime(config.getMaxIdleTime())
+                .maxLifeTime(config.getMaxLifeTime())
+                .evictInBackground(config.getEvictionInterval())
+                .metrics(true)
+                .build();
+    }
+
+    /**
+     * HTTP client shared by the Open-Meteo WebClients: gzip, keep-alive, timeouts and cached DNS
+     */
     @Bean
-    public WebClient webClient() {
-        return WebClient.builder().build();
+    public HttpClient openMeteoHttpClient(ConnectionProvider openMeteoConnectionProvider, HttpClientConfig config) {
+        return HttpClient.create(openMeteoConnectionProvider)
+                .compress(true)
+                .keepAlive(true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) config.getConnectTimeout().toMillis())
+                .responseTimeout(config.getResponseTimeout())
+                .resolver(spec -> spec
+                        .cacheMinTimeToLive(config.getDnsCacheTtl())
+                        .cacheMaxTimeToLive(config.getDnsCacheTtl()));
     }
 }
@@ -0,0 +1,23 @@
+package com.aiexploration.mcp.weather.config;
+
+import com.aiexploration.mcp.weather.controller.McpWebSocketHandler;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.handler.SimpleUrlHandlerMapping;
+
+import java.util.Map;
+
+@Configuration
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class WebSocketConfig {
+
+    /**
+     * Maps /mcp/ws ahead of the annotated controllers (order -1)
+     */
+    @Bean
+    public HandlerMapping mcpWebSocketMapping(McpWebSocketHandler mcpWebSocketHandler) {
+        return new SimpleUrlHandlerMapping(Map.of("/mcp/ws", mcpWebSocketHandler), -1);
+    }
+}
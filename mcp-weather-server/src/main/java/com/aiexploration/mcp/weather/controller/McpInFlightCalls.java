@@ -0,0 +1,53 @@
+package com.aiexploration.mcp.weather.controller;
+
+import com.aiexploration.mcp.weather.model.mcp.JsonRpcResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Requests running on one multiplexed connection (stdio, WebSocket), tracked by id so that
+ * notifications/cancelled can cancel them. A cancelled request gets no response, as MCP requires.
+ * Calls that are still running when the connection goes away are cancelled with its subscription.
+ */
+@Slf4j
+final class McpInFlightCalls {
+
+    static final String CANCELLED = "notifications/cancelled";
+
+    private final Map<JsonNode, Sinks.One<Boolean>> calls = new ConcurrentHashMap<>();
+
+    /**
+     * The response of the call, or empty if the request is cancelled before it completes.
+     * Cancelling unsubscribes from the call, which cancels its upstream requests as well.
+     */
+    Mono<JsonRpcResponse> track(JsonNode id, Mono<JsonRpcResponse> call) {
+        return Mono.defer(() -> {
+            Sinks.One<Boolean> cancelled = Sinks.one();
+            calls.put(id, cancelled);
+            return call.takeUntilOther(cancelled.asMono())
+                    .doFinally(signal -> calls.remove(id, cancelled));
+        });
+    }
+
+    /**
+     * Handle a notifications/cancelled message
+     */
+    void cancel(JsonNode notification) {
+        JsonNode params = notification.path("params");
+        JsonNode id = params.get("requestId");
+        if (id == null || id.isNull()) {
+            return;
+        }
+
+        Sinks.One<Boolean> call = calls.remove(id);
+        if (call != null) {
+            call.tryEmitValue(true);
+            log.info("Cancelled request {}: {}", id, params.path("reason").asText("no reason given"));
+        }
+    }
+}
@@ -1,21 +1,23 @@
 package com.aiexploration.mcp.weather.controller;
 
 import com.aiexploration.mcp.weather.model.mcp.JsonRpcRequest;
-import com.aiexploration.mcp.weather.model.mcp.JsonRpcResponse;
-import com.aiexploration.mcp.weather.model.mcp.ToolDefinition;
-import com.aiexploration.mcp.weather.service.McpToolService;
+import com.aiexploration.mcp.weather.service.GeocodingCache;
+import com.aiexploration.mcp.weather.service.McpRequestDispatcher;
+import com.aiexploration.mcp.weather.service.McpSessionService;
+import com.aiexploration.mcp.weather.service.UpstreamLimiter;
+import com.aiexploration.mcp.weather.service.WeatherCache;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Mono;
 
-import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
-import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Slf4j
 @RestController
@@ -23,128 +25,114 @@ import java.util.concurrent.ConcurrentHashMap;
 @RequiredArgsConstructor
 public class McpServerController {
 
-    private final McpToolService mcpToolService;
-    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+    private static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
 
+    private final McpRequestDispatcher dispatcher;
+    private final GeocodingCache geocodingCache;
+    private final WeatherCache weatherCache;
+    private final McpSessionService sessionService;
+    private final UpstreamLimiter upstreamLimiter;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * JSON-RPC endpoint. JSON is the default; CBOR and Smile bodies are accepted as well and the
+     * response encoding follows the client's Accept header. Tool calls run without blocking a thread
+     * for the upstream latency.
+     */
     @PostMapping(
             value = "",
-            consumes = MediaType.APPLICATION_JSON_VALUE,
-            produces = {MediaType.APPLICATION_JSON_VALUE, "text/event-stream"}
+            consumes = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE},
+            produces = {MediaType.APPLICATION_JSON_VALUE, "text/event-stream",
+                    MediaType.APPLICATION_CBOR_VALUE, APPLICATION_SMILE_VALUE}
     )
-    public ResponseEntity<?> handleMcpRequest(
-            @RequestBody JsonRpcRequest request,
+    public Mono<ResponseEntity<?>> handleMcpRequest(
+            @RequestBody JsonNode body,
             @RequestHeader(value = "Mcp-Session-Id", required = false) String sessionId) {
 
-        log.info("Received MCP request: method={}, id={}, sessionId={}",
-                request.getMethod(), request.getId(), sessionId);
+        // Invalid, expired or terminated session: the client has to initialize again
+        if (sessionId != null && !containsInitialize(body) && !sessionService.isValid(sessionId)) {
+            log.info("Rejecting request with unknown session: {}", sessionId);
+            return Mono.just(ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(dispatcher.errorResponse(null, -32001, "Session not found")));
+        }
 
-        try {
-            Object result = switch (request.getMethod()) {
-                case "initialize" -> handleInitialize(request);
-                case "tools/list" -> handleToolsList(request);
-                case "tools/call" -> handleToolsCall(request);
-                case "ping" -> handlePing(request);
-                default -> null;
-            };
-
-            if (result == null) {
-                return ResponseEntity.ok(JsonRpcResponse.builder()
-                        .jsonrpc("2.0")
-                        .id(request.getId())
-                        .error(JsonRpcResponse.JsonRpcError.builder()
-                                .code(-32601)
-                                .message("Method not found: " + request.getMethod())
-                                .build())
-                        .build());
-            }
+        if (body.isArray()) {
+            return handleBatch(body, sessionId);
+        }
 
-            // For initialize method, add session ID header
-            if ("initialize".equals(request.getMethod())) {
-                String newSessionId = UUID.randomUUID().toString();
-                sessions.put(newSessionId, newSessionId);
+        JsonRpcRequest request;
+        try {
+            request = objectMapper.convertValue(body, JsonRpcRequest.class);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(ResponseEntity.ok(dispatcher.errorResponse(null, -32600, "Invalid Request: " + e.getMessage())));
+        }
 
-                HttpHeaders headers = new HttpHeaders();
-                headers.add("Mcp-Session-Id", newSessionId);
+        log.info("Received MCP request: method={}, id={}, sessionId={}",
+                request.getMethod(), request.getId(), sessionId);
 
+        return dispatcher.dispatch(request).map(response -> {
+            // For initialize method, add session ID header
+            if ("initialize".equals(request.getMethod()) && response.getError() == null) {
                 return ResponseEntity.ok()
-                        .headers(headers)
-                        .body(JsonRpcResponse.builder()
-                                .jsonrpc("2.0")
-                                .id(request.getId())
-                                .result(result)
-                                .build());
+                        .headers(newSessionHeaders())
+                        .body(response);
             }
-
-            return ResponseEntity.ok(JsonRpcResponse.builder()
-                    .jsonrpc("2.0")
-                    .id(request.getId())
-                    .result(result)
-                    .build());
-
-        } catch (Exception e) {
-            log.error("Error handling MCP request", e);
-            return ResponseEntity.ok(JsonRpcResponse.builder()
-                    .jsonrpc("2.0")
-                    .id(request.getId())
-                    .error(JsonRpcResponse.JsonRpcError.builder()
-                            .code(-32603)
-                            .message("Internal error: " + e.getMessage())
-                            .build())
-                    .build());
-        }
+            return ResponseEntity.ok(response);
+        });
     }
 
-    private Object handleInitialize(JsonRpcRequest request) {
-        log.info("Handling initialize request");
-
-        Map<String, Object> serverInfo = new HashMap<>();
-        serverInfo.put("name", "weather-mcp-server");
-        serverInfo.put("version", "1.0.0");
-
-        Map<String, Object> capabilities = new HashMap<>();
-        capabilities.put("tools", Map.of("listChanged", false));
+    private Mono<ResponseEntity<?>> handleBatch(JsonNode batch, String sessionId) {
+        log.info("Received MCP batch request: size={}, sessionId={}", batch.size(), sessionId);
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("protocolVersion", "2024-11-05");
-        result.put("capabilities", capabilities);
-        result.put("serverInfo", serverInfo);
-
-        return result;
-    }
-
-    private Object handleToolsList(JsonRpcRequest request) {
-        log.info("Handling tools/list request");
-
-        List<ToolDefinition> tools = mcpToolService.getTools();
+        return dispatcher.dispatchBatch(batch).map(responses -> {
+            if (responses.isEmpty()) {
+                return ResponseEntity.accepted().build();
+            }
 
-        Map<String, Object> result = new HashMap<>();
-        result.put("tools", tools);
+            // A successful initialize inside the batch opens a session as well
+            boolean initialized = false;
+            for (JsonNode item : batch) {
+                if ("initialize".equals(item.path("method").asText())) {
+                    JsonNode id = item.get("id");
+                    initialized |= responses.stream().anyMatch(r -> id != null && id.equals(r.getId()) && r.getError() == null);
+                }
+            }
 
-        return result;
+            return initialized
+                    ? ResponseEntity.ok().headers(newSessionHeaders()).body(responses)
+                    : ResponseEntity.ok(responses);
+        });
     }
 
-    private Object handleToolsCall(JsonRpcRequest request) {
-        log.info("Handling tools/call request");
-
-        Map<String, Object> params = request.getParams();
-        if (params == null) {
-            throw new IllegalArgumentException("Missing params");
-        }
-
-        String toolName = (String) params.get("name");
-        @SuppressWarnings("unchecked")
-        Map<String, Object> arguments = (Map<String, Object>) params.getOrDefault("arguments", new HashMap<>());
-
-        if (toolName == null) {
-            throw new IllegalArgumentException("Missing tool name");
+    private boolean containsInitialize(JsonNode body) {
+        if (body.isArray()) {
+            for (JsonNode item : body) {
+                if ("initialize".equals(item.path("method").asText())) {
+                    return true;
+                }
+            }
+            return false;
         }
+        return "initialize".equals(body.path("method").asText());
+    }
 
-        return mcpToolService.executeTool(toolName, arguments);
+    private HttpHeaders newSessionHeaders() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Mcp-Session-Id", sessionService.issue());
+        return headers;
     }
 
-    private Object handlePing(JsonRpcRequest request) {
-        log.info("Handling ping request");
-        return Map.of("status", "ok");
+    /**
+     * Explicit session termination by the client. Later requests with the session get 404.
+     * 503 when the server remembers too many terminated sessions: the session then simply expires.
+     */
+    @DeleteMapping("")
+    public ResponseEntity<Void> terminateSession(@RequestHeader("Mcp-Session-Id") String sessionId) {
+        return switch (sessionService.terminate(sessionId)) {
+            case TERMINATED -> ResponseEntity.noContent().build();
+            case NOT_FOUND -> ResponseEntity.notFound().build();
+            case REFUSED -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        };
     }
 
     @GetMapping("/health")
@@ -154,4 +142,17 @@ public class McpServerController {
                 "service", "weather-mcp-server"
         ));
     }
+
+    /**
+     * Cache statistics (size, hits, misses, hit ratio, evictions), session counts and the Open-Meteo limiter state
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        return ResponseEntity.ok(Map.of(
+                "geocoding", geocodingCache.getStats(),
+                "weather", weatherCache.getStats(),
+                "sessions", sessionService.getStats(),
+                "upstream", upstreamLimiter.getStats()
+        ));
+    }
 }
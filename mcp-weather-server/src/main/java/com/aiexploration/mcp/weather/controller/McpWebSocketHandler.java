@@ -0,0 +1,69 @@
+package com.aiexploration.mcp.weather.controller;
+
+import com.aiexploration.mcp.weather.service.McpRequestDispatcher;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.socket.WebSocketHandler;
+import org.springframework.web.reactive.socket.WebSocketMessage;
+import org.springframework.web.reactive.socket.WebSocketSession;
+import reactor.core.publisher.Mono;
+
+/**
+ * MCP over WebSocket (/mcp/ws): one connection carries any number of concurrent JSON-RPC requests.
+ * Every response is sent as soon as it is ready, the client matches responses by id.
+ * notifications/cancelled cancels a running request; closing the connection cancels all of them.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class McpWebSocketHandler implements WebSocketHandler {
+
+    private final McpRequestDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+
+    @Override
+    public Mono<Void> handle(WebSocketSession session) {
+        log.info("MCP WebSocket connection opened: {}", session.getId());
+        McpInFlightCalls calls = new McpInFlightCalls();
+
+        return session.send(session.receive()
+                        .map(WebSocketMessage::getPayloadAsText)
+                        .flatMap(text -> handleMessage(text, calls))
+                        .flatMap(this::toJson)
+                        .map(session::textMessage))
+                .doFinally(signal -> log.info("MCP WebSocket connection closed: {} ({})", session.getId(), signal));
+    }
+
+    private Mono<?> handleMessage(String text, McpInFlightCalls calls) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(text);
+        } catch (Exception e) {
+            return Mono.just(dispatcher.errorResponse(null, -32700, "Parse error: " + e.getMessage()));
+        }
+
+        if (message.isArray()) {
+            return dispatcher.dispatchBatch(message).filter(responses -> !responses.isEmpty());
+        }
+
+        String method = message.path("method").asText();
+        log.info("Received MCP request over WebSocket: method={}, id={}", method, message.path("id").asText(null));
+        if (McpInFlightCalls.CANCELLED.equals(method)) {
+            calls.cancel(message);
+        } else if (message.hasNonNull("id")) {
+            return calls.track(message.get("id"), dispatcher.dispatch(message));
+        }
+        return Mono.empty();
+    }
+
+    private Mono<String> toJson(Object response) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(response))
+                .onErrorResume(e -> {
+                    log.warn("Failed to serialize MCP response for WebSocket: {}", e.getMessage());
+                    return Mono.empty();
+                });
+    }
+}
@@ -0,0 +1,94 @@
+package com.aiexploration.mcp.weather.controller;
+
+import com.aiexploration.mcp.weather.service.McpRequestDispatcher;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MCP stdio transport: newline-delimited JSON-RPC on stdin/stdout.
+ * Requests are handled concurrently and answered as soon as they finish (the client matches
+ * responses by id), and notifications/cancelled cancels a running request. Enabled by the "stdio" profile.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "mcp.transport", havingValue = "stdio")
+public class StdioMcpServer implements ApplicationRunner {
+
+    private final McpRequestDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+    private final ApplicationContext applicationContext;
+
+    @Override
+    public void run(ApplicationArguments args) throws Exception {
+        log.info("Serving MCP over stdio");
+
+        PrintStream out = new PrintStream(System.out, false, StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+        McpInFlightCalls calls = new McpInFlightCalls();
+
+        // stdin is read on a bounded elastic worker, so demand replenished from an event loop never blocks it.
+        // Responses are written in completion order; the stream ends once stdin is closed and every
+        // running request has finished.
+        Flux.fromStream(in.lines())
+                .subscribeOn(Schedulers.boundedElastic())
+                .filter(line -> !line.isBlank())
+                .flatMap(line -> handleLine(line, calls))
+                .doOnNext(response -> write(response, out))
+                .blockLast();
+
+        log.info("stdin closed, shutting down");
+        System.exit(SpringApplication.exit(applicationContext, () -> 0));
+    }
+
+    private Mono<?> handleLine(String line, McpInFlightCalls calls) {
+        JsonNode message;
+        try {
+            message = objectMapper.readTree(line);
+        } catch (Exception e) {
+            return Mono.just(dispatcher.errorResponse(null, -32700, "Parse error: " + e.getMessage()));
+        }
+
+        if (message.isArray()) {
+            return dispatcher.dispatchBatch(message).filter(responses -> !responses.isEmpty());
+        }
+
+        String method = message.path("method").asText();
+        log.info("Received MCP request over stdio: method={}, id={}", method, message.path("id").asText(null));
+        if (McpInFlightCalls.CANCELLED.equals(method)) {
+            calls.cancel(message);
+        } else if (message.hasNonNull("id")) {
+            return calls.track(message.get("id"), dispatcher.dispatch(message));
+        }
+        return Mono.empty();
+    }
+
+    private void write(Object response, PrintStream out) {
+        try {
+            String json = objectMapper.writeValueAsString(response);
+            synchronized (out) {
+                out.print(json);
+                out.print('\n');
+                out.flush();
+            }
+        } catch (Exception e) {
+            log.error("Failed to write stdio response", e);
+        }
+    }
+}
@@ -0,0 +1,4 @@
+package com.aiexploration.mcp.weather.model;
+
+public record Coordinates(double latitude, double longitude) {
+}
@@ -1,6 +1,7 @@
 package com.aiexploration.mcp.weather.model.mcp;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 
 import java.util.Map;
@@ -9,7 +10,7 @@ import java.util.Map;
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class JsonRpcRequest {
     private String jsonrpc;
-    private String id;
+    private JsonNode id; // string or number, echoed back unchanged
     private String method;
     private Map<String, Object> params;
 }
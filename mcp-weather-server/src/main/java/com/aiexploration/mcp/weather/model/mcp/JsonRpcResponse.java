@@ -1,6 +1,7 @@
 package com.aiexploration.mcp.weather.model.mcp;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.databind.JsonNode;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -13,7 +14,7 @@ import lombok.NoArgsConstructor;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 public class JsonRpcResponse {
     private String jsonrpc = "2.0";
-    private String id;
+    private JsonNode id; // same type as the request id
     private Object result;
     private JsonRpcError error;
 
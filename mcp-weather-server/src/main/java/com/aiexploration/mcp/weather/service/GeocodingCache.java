@@ -0,0 +1,104 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.CacheConfig;
+import com.aiexploration.mcp.weather.model.Location;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.text.Normalizer;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+
+/**
+ * In-process cache of geocoding results, keyed by normalized name (case, whitespace and diacritics
+ * folded, so "  São Paulo" and "sao paulo" share an entry) and result count.
+ * Bounded by size with Caffeine's W-TinyLFU eviction; found places live for weather.cache.geocoding.ttl,
+ * queries without results for the shorter weather.cache.geocoding.negative-ttl.
+ */
+@Slf4j
+@Component
+public class GeocodingCache {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final Cache<Key, List<Location>> cache;
+
+    public GeocodingCache(CacheConfig cacheConfig) {
+        CacheConfig.Geocoding config = cacheConfig.getGeocoding();
+        long ttl = config.getTtl().toNanos();
+        long negativeTtl = config.getNegativeTtl().toNanos();
+
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfter(new Expiry<Key, List<Location>>() {
+                    @Override
+                    public long expireAfterCreate(Key key, List<Location> locations, long currentTime) {
+                        return locations.isEmpty() ? negativeTtl : ttl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, List<Location> locations, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, locations, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, List<Location> locations, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Cached locations for the query, loading them on a miss. An empty loader result
+     * (the API failed) is returned as an empty list but not cached.
+     */
+    public Mono<List<Location>> get(String name, int count, Supplier<Mono<List<Location>>> loader) {
+        Key key = new Key(normalize(name), count);
+        return Mono.defer(() -> {
+            List<Location> cached = cache.getIfPresent(key);
+            if (cached != null) {
+                log.debug("Geocoding cache hit: {} ({})", key.name(), count);
+                return Mono.just(cached);
+            }
+
+            return loader.get()
+                    .map(List::copyOf)
+                    .doOnNext(locations -> cache.put(key, locations))
+                    .defaultIfEmpty(List.of());
+        });
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRatio", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    static String normalize(String name) {
+        if (name == null) {
+            return "";
+        }
+        String folded = DIACRITICS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+        return WHITESPACE.matcher(folded.trim()).replaceAll(" ").toLowerCase(Locale.ROOT);
+    }
+
+    private record Key(String name, int count) {
+    }
+}
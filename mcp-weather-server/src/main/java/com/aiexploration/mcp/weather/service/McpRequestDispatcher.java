@@ -0,0 +1,191 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.model.mcp.JsonRpcRequest;
+import com.aiexploration.mcp.weather.model.mcp.JsonRpcResponse;
+import com.aiexploration.mcp.weather.model.mcp.ToolDefinition;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Transport-independent JSON-RPC handling, shared by the HTTP and stdio endpoints
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class McpRequestDispatcher {
+
+    private final McpToolService mcpToolService;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Parse and dispatch a single JSON-RPC message
+     */
+    public Mono<JsonRpcResponse> dispatch(JsonNode message) {
+        JsonRpcRequest request;
+        try {
+            request = objectMapper.convertValue(message, JsonRpcRequest.class);
+        } catch (IllegalArgumentException e) {
+            return Mono.just(errorResponse(null, -32600, "Invalid Request: " + e.getMessage()));
+        }
+        return dispatch(request);
+    }
+
+    /**
+     * JSON-RPC 2.0 batch: items are executed concurrently, responses keep the order of the requests.
+     * Notifications (items without id) get no response entry, so the result may be empty.
+     */
+    public Mono<List<JsonRpcResponse>> dispatchBatch(JsonNode batch) {
+        if (batch.isEmpty()) {
+            return Mono.just(List.of(errorResponse(null, -32600, "Invalid Request: empty batch")));
+        }
+
+        return Flux.fromIterable(batch)
+                .flatMapSequential(item -> {
+                    JsonRpcRequest request;
+                    try {
+                        request = objectMapper.convertValue(item, JsonRpcRequest.class);
+                    } catch (IllegalArgumentException e) {
+                        return Mono.just(errorResponse(null, -32600, "Invalid Request: " + e.getMessage()));
+                    }
+                    return dispatch(request).filter(response -> request.getId() != null);
+                })
+                .collectList();
+    }
+
+    /**
+     * Dispatch a single JSON-RPC request. Errors are reported as JSON-RPC error responses.
+     */
+    public Mono<JsonRpcResponse> dispatch(JsonRpcRequest request) {
+        return Mono.defer(() -> handle(request))
+                .map(result -> JsonRpcResponse.builder()
+                        .jsonrpc("2.0")
+                        .id(request.getId())
+                        .result(result)
+                        .build())
+                .switchIfEmpty(Mono.fromSupplier(() ->
+                        errorResponse(request.getId(), -32601, "Method not found: " + request.getMethod())))
+                .onErrorResume(UpstreamOverloadedException.class, e -> Mono.just(overloadedResponse(request.getId(), e)))
+                .onErrorResume(e -> {
+                    log.error("Error handling MCP request", e);
+                    return Mono.just(errorResponse(request.getId(), -32603, "Internal error: " + e.getMessage()));
+                });
+    }
+
+    public JsonRpcResponse errorResponse(JsonNode id, int code, String message) {
+        return JsonRpcResponse.builder()
+                .jsonrpc("2.0")
+                .id(id)
+                .error(JsonRpcResponse.JsonRpcError.builder()
+                        .code(code)
+                        .message(message)
+                        .build())
+                .build();
+    }
+
+    /**
+     * Server busy: the client should retry after data.retryAfterMs
+     */
+    private JsonRpcResponse overloadedResponse(JsonNode id, UpstreamOverloadedException e) {
+        log.warn("Rejecting request {}: {}", id, e.getMessage());
+        JsonRpcResponse response = errorResponse(id, -32000, e.getMessage());
+        response.getError().setData(Map.of(
+                "retryable", true,
+                "retryAfterMs", e.getRetryAfter().toMillis()
+        ));
+        return response;
+    }
+
+    /**
+     * Result of the method, empty if the method is unknown
+     */
+    private Mono<Object> handle(JsonRpcRequest request) {
+        return switch (request.getMethod() != null ? request.getMethod() : "") {
+            case "initialize" -> Mono.just(handleInitialize(request));
+            case "tools/list" -> Mono.just(handleToolsList(request));
+            case "tools/call" -> handleToolsCall(request);
+            case "ping" -> Mono.just(handlePing(request));
+            default -> Mono.empty();
+        };
+    }
+
+    private Object handleInitialize(JsonRpcRequest request) {
+        log.info("Handling initialize request");
+
+        Map<String, Object> serverInfo = new HashMap<>();
+        serverInfo.put("name", "weather-mcp-server");
+        serverInfo.put("version", "1.0.0");
+
+        Map<String, Object> capabilities = new HashMap<>();
+        capabilities.put("tools", Map.of("listChanged", false));
+
+        Map<String, Object> result = new HashMap<>();
+        result.put("protocolVersion", "2024-11-05");
+        result.put("capabilities", capabilities);
+        result.put("serverInfo", serverInfo);
+
+        return result;
+    }
+
+    /**
+     * tools/list with a version in _meta.etag. A client that sends the version it already has
+     * in params._meta.ifNoneMatch gets only {"_meta": {"etag": ..., "notModified": true}} back.
+     */
+    private Object handleToolsList(JsonRpcRequest request) {
+        log.info("Handling tools/list request");
+
+        String version = mcpToolService.getToolsVersion();
+
+        Map<String, Object> result = new HashMap<>();
+        if (version.equals(ifNoneMatch(request))) {
+            result.put("_meta", Map.of("etag", version, "notModified", true));
+            return result;
+        }
+
+        List<ToolDefinition> tools = mcpToolService.getTools();
+        result.put("tools", tools);
+        result.put("_meta", Map.of("etag", version));
+
+        return result;
+    }
+
+    private String ifNoneMatch(JsonRpcRequest request) {
+        if (request.getParams() != null && request.getParams().get("_meta") instanceof Map<?, ?> meta
+                && meta.get("ifNoneMatch") instanceof String etag) {
+            return etag;
+        }
+        return null;
+    }
+
+    private Mono<Object> handleToolsCall(JsonRpcRequest request) {
+        log.info("Handling tools/call request");
+
+        Map<String, Object> params = request.getParams();
+        if (params == null) {
+            throw new IllegalArgumentException("Missing params");
+        }
+
+        String toolName = (String) params.get("name");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> arguments = (Map<String, Object>) params.getOrDefault("arguments", new HashMap<>());
+
+        if (toolName == null) {
+            throw new IllegalArgumentException("Missing tool name");
+        }
+
+        return mcpToolService.executeTool(toolName, arguments);
+    }
+
+    private Object handlePing(JsonRpcRequest request) {
+        log.info("Handling ping request");
+        return Map.of("status", "ok");
+    }
+}
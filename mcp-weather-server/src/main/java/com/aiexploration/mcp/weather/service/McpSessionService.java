@@ -0,0 +1,220 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.SessionConfig;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stateless MCP sessions. The Mcp-Session-Id is a signed token: a random id and the issue time,
+ * followed by an HMAC-SHA256 of both, so every replica sharing mcp.session.secret accepts every
+ * session without a shared store. A token is valid for mcp.session.max-age.
+ * The only state is local: sessions terminated with DELETE, remembered until their tokens would have
+ * expired anyway, and sessions seen within mcp.session.idle-timeout (bounded by mcp.session.max-tracked),
+ * which back the metrics. Termination is therefore local too: another replica keeps accepting
+ * a terminated token until it expires.
+ * A revocation is never evicted early, as that would make its token valid again. Instead the set is bounded
+ * by mcp.session.max-terminated: while it is full, termination is refused and the token stays valid until
+ * it expires, so a client looping initialize and DELETE cannot grow it without limit.
+ */
+@Slf4j
+@Service
+public class McpSessionService {
+
+    private static final String HMAC = "HmacSHA256";
+    private static final int ID_BYTES = 16;
+    private static final int PAYLOAD_BYTES = ID_BYTES + Long.BYTES;
+    // Caffeine node plus the 32-character id string, roughly
+    private static final long BYTES_PER_ENTRY = 160;
+
+    private final SecretKeySpec key;
+    private final long maxAgeSeconds;
+    private final long maxTerminated;
+    private final SecureRandom random = new SecureRandom();
+    private final Cache<String, Boolean> active;
+    private final Cache<String, Boolean> terminated;
+    private final Counter issued;
+    private final Counter rejected;
+    private final Counter refused;
+
+    public McpSessionService(SessionConfig config, MeterRegistry meterRegistry) {
+        byte[] secret;
+        if (config.getSecret() == null || config.getSecret().isBlank()) {
+            log.warn("mcp.session.secret is not set, using a random key: sessions are valid on this instance only and not after a restart");
+            secret = new byte[32];
+            random.nextBytes(secret);
+        } else {
+            secret = config.getSecret().getBytes(StandardCharsets.UTF_8);
+        }
+        this.key = new SecretKeySpec(secret, HMAC);
+        this.maxAgeSeconds = config.getMaxAge().toSeconds();
+        this.maxTerminated = config.getMaxTerminated();
+
+        this.active = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTracked())
+                .expireAfterAccess(config.getIdleTimeout())
+                .build();
+        // A terminated token is useless after max-age, so remembering it for max-age after termination is enough.
+        // Bounded by refusing terminations (see terminate), not by eviction
+        this.terminated = Caffeine.newBuilder()
+                .expireAfterWrite(config.getMaxAge())
+                .build();
+
+        this.issued = Counter.builder("mcp.sessions.issued")
+                .description("Sessions opened by initialize")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("mcp.sessions.rejected")
+                .description("Requests with an invalid, expired or terminated session")
+                .register(meterRegistry);
+        this.refused = Counter.builder("mcp.sessions.termination.refused")
+                .description("Terminations refused because mcp.session.max-terminated sessions are remembered")
+                .register(meterRegistry);
+        Gauge.builder("mcp.sessions.active", active, Cache::estimatedSize)
+                .description("Sessions with a request within the idle timeout on this instance")
+                .register(meterRegistry);
+        Gauge.builder("mcp.sessions.terminated", terminated, Cache::estimatedSize)
+                .description("Terminated sessions remembered until their tokens expire")
+                .register(meterRegistry);
+        Gauge.builder("mcp.sessions.state", this, McpSessionService::estimatedStateBytes)
+                .description("Estimated memory held for session tracking")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * New session token
+     */
+    public String issue() {
+        byte[] payload = ByteBuffer.allocate(PAYLOAD_BYTES)
+                .put(randomId())
+                .putLong(Instant.now().getEpochSecond())
+                .array();
+        issued.increment();
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(sign(payload));
+    }
+
+    /**
+     * Whether the token was issued with our key, has not expired and was not terminated.
+     * A valid session is marked active.
+     */
+    public boolean isValid(String token) {
+        String id = verify(token);
+        if (id == null || terminated.getIfPresent(id) != null) {
+            rejected.increment();
+            return false;
+        }
+        active.put(id, Boolean.TRUE);
+        return true;
+    }
+
+    /**
+     * Terminate the session (DELETE). Synchronized so the bound of the terminated set is checked and
+     * applied atomically; termination is rare next to validation.
+     */
+    public synchronized Termination terminate(String token) {
+        String id = verify(token);
+        if (id == null || terminated.getIfPresent(id) != null) {
+            return Termination.NOT_FOUND;
+        }
+        if (terminated.estimatedSize() >= maxTerminated) {
+            // Expired revocations may not have been removed yet
+            terminated.cleanUp();
+            if (terminated.estimatedSize() >= maxTerminated) {
+                refused.increment();
+                log.warn("Refusing to terminate session {}: {} terminated sessions are remembered", id, maxTerminated);
+                return Termination.REFUSED;
+            }
+        }
+        terminated.put(id, Boolean.TRUE);
+        active.invalidate(id);
+        log.info("Session terminated: {}", id);
+        return Termination.TERMINATED;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("issued", (long) issued.count());
+        result.put("rejected", (long) rejected.count());
+        result.put("active", active.estimatedSize());
+        result.put("terminated", terminated.estimatedSize());
+        result.put("terminationsRefused", (long) refused.count());
+        result.put("stateBytes", estimatedStateBytes());
+        return result;
+    }
+
+    private long estimatedStateBytes() {
+        return (active.estimatedSize() + terminated.estimatedSize()) * BYTES_PER_ENTRY;
+    }
+
+    /**
+     * Session id of a well-formed, correctly signed and unexpired token, otherwise null
+     */
+    private String verify(String token) {
+        if (token == null) {
+            return null;
+        }
+        int dot = token.indexOf('.');
+        if (dot < 0) {
+            return null;
+        }
+
+        byte[] payload;
+        byte[] signature;
+        try {
+            Base64.Decoder decoder = Base64.getUrlDecoder();
+            payload = decoder.decode(token.substring(0, dot));
+            signature = decoder.decode(token.substring(dot + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (payload.length != PAYLOAD_BYTES || !MessageDigest.isEqual(sign(payload), signature)) {
+            return null;
+        }
+
+        long issuedAt = ByteBuffer.wrap(payload, ID_BYTES, Long.BYTES).getLong();
+        if (Instant.now().getEpochSecond() - issuedAt > maxAgeSeconds) {
+            return null;
+        }
+        return token.substring(0, dot);
+    }
+
+    private byte[] randomId() {
+        byte[] id = new byte[ID_BYTES];
+        random.nextBytes(id);
+        return id;
+    }
+
+    public enum Termination {
+        TERMINATED,
+        NOT_FOUND, // not a valid session
+        REFUSED // too many terminated sessions remembered, the token stays valid until it expires
+    }
+
+    private byte[] sign(byte[] payload) {
+        try {
+            // Mac instances are not thread-safe, and creating one is cheap next to a request
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Failed to sign session token", e);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package com.aiexploration.mcp.weather.service;
 
+import com.aiexploration.mcp.weather.model.Coordinates;
+import com.aiexploration.mcp.weather.model.CurrentWeather;
 import com.aiexploration.mcp.weather.model.DailyWeather;
 import com.aiexploration.mcp.weather.model.Location;
 import com.aiexploration.mcp.weather.model.WeatherResponse;
@@ -9,8 +11,11 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
 
+import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 
@@ -19,9 +24,35 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class McpToolService {
 
+    private static final int MAX_BATCH_LOCATIONS = 50;
+    private static final int BY_NAME_CANDIDATES = 5;
+    // Open-Meteo's largest geocoding result count: with a country filter the match may rank far below the top 5
+    private static final int BY_NAME_CANDIDATES_IN_COUNTRY = 100;
+    private static final List<String> BY_NAME_INCLUDES = List.of("current", "forecast", "both");
+
     private final OpenMeteoClient openMeteoClient;
     private final ObjectMapper objectMapper;
 
+    private volatile String toolsVersion;
+
+    /**
+     * Version (ETag) of the tool catalog: a hash of the tool definitions, computed once
+     * since the catalog does not change while the server is running
+     */
+    public String getToolsVersion() {
+        String version = toolsVersion;
+        if (version == null) {
+            try {
+                byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(getTools()));
+                version = HexFormat.of().formatHex(digest, 0, 16);
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to compute tools version", e);
+            }
+            toolsVersion = version;
+        }
+        return version;
+    }
+
     /**
      * Get list of available tools
      */
@@ -96,101 +127,257 @@ public class McpToolService {
                 ))
                 .build());
 
+        // Tool 4: Get weather for several locations at once
+        tools.add(ToolDefinition.builder()
+                .name("get_weather_batch")
+                .description("Get current weather, and optionally a daily forecast, for up to " + MAX_BATCH_LOCATIONS + " locations in one call. Use it instead of repeated get_current_weather/get_weather_forecast calls when comparing several places. Returns one compact line per location.")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", Map.of(
+                                "locations", Map.of(
+                                        "type", "array",
+                                        "description", "Locations to get weather for",
+                                        "minItems", 1,
+                                        "maxItems", MAX_BATCH_LOCATIONS,
+                                        "items", Map.of(
+                                                "type", "object",
+                                                "properties", Map.of(
+                                                        "latitude", Map.of(
+                                                                "type", "number",
+                                                                "description", "Latitude coordinate (e.g., 52.52)"
+                                                        ),
+                                                        "longitude", Map.of(
+                                                                "type", "number",
+                                                                "description", "Longitude coordinate (e.g., 13.41)"
+                                                        ),
+                                                        "name", Map.of(
+                                                                "type", "string",
+                                                                "description", "Optional label to show in the results (e.g., 'Berlin')"
+                                                        )
+                                                ),
+                                                "required", List.of("latitude", "longitude")
+                                        )
+                                ),
+                                "days", Map.of(
+                                        "type", "integer",
+                                        "description", "Number of forecast days (0-16, default: 0 - current weather only)",
+                                        "default", 0,
+                                        "minimum", 0,
+                                        "maximum", 16
+                                )
+                        ),
+                        "required", List.of("locations")
+                ))
+                .build());
+
+        // Tool 5: Get weather by location name
+        tools.add(ToolDefinition.builder()
+                .name("get_weather_by_name")
+                .description("Get weather for a location by name in one call: finds the location and returns its current weather, forecast or both. Use it instead of search_location followed by get_current_weather/get_weather_forecast. If the name is ambiguous, the best match is used and the other matches are listed. IMPORTANT: Only works with city names in English.")
+                .inputSchema(Map.of(
+                        "type", "object",
+                        "properties", Map.of(
+                                "name", Map.of(
+                                        "type", "string",
+                                        "description", "Location name in English only (e.g., 'Berlin', 'New York')"
+                                ),
+                                "country", Map.of(
+                                        "type", "string",
+                                        "description", "Optional country name or ISO code to pick among locations with the same name (e.g., 'US', 'Germany')"
+                                ),
+                                "include", Map.of(
+                                        "type", "string",
+                                        "description", "What to return (default: current)",
+                                        "enum", BY_NAME_INCLUDES,
+                                        "default", "current"
+                                ),
+                                "days", Map.of(
+                                        "type", "integer",
+                                        "description", "Number of forecast days (1-16, default: 7)",
+                                        "default", 7,
+                                        "minimum", 1,
+                                        "maximum", 16
+                                )
+                        ),
+                        "required", List.of("name")
+                ))
+                .build());
+
         return tools;
     }
 
     /**
-     * Execute a tool
+     * Execute a tool. Failures are reported as {"error": ...} results, except
+     * {@link UpstreamOverloadedException}, which is passed on to become a retryable JSON-RPC error.
      */
-    public Object executeTool(String toolName, Map<String, Object> arguments) {
+    public Mono<Object> executeTool(String toolName, Map<String, Object> arguments) {
         log.info("Executing tool: {} with arguments: {}", toolName, arguments);
 
-        try {
-            return switch (toolName) {
-                case "search_location" -> executeSearchLocation(arguments);
-                case "get_current_weather" -> executeGetCurrentWeather(arguments);
-                case "get_weather_forecast" -> executeGetWeatherForecast(arguments);
-                default -> Map.of("error", "Unknown tool: " + toolName);
-            };
-        } catch (Exception e) {
-            log.error("Error executing tool: {}", toolName, e);
-            return Map.of("error", "Tool execution failed: " + e.getMessage());
-        }
+        return Mono.defer(() -> dispatchTool(toolName, arguments))
+                .onErrorResume(e -> !(e instanceof UpstreamOverloadedException), e -> {
+                    log.error("Error executing tool: {}", toolName, e);
+                    return Mono.just(Map.of("error", "Tool execution failed: " + e.getMessage()));
+                });
+    }
+
+    private Mono<Object> dispatchTool(String toolName, Map<String, Object> arguments) {
+        return switch (toolName) {
+            case "search_location" -> executeSearchLocation(arguments);
+            case "get_current_weather" -> executeGetCurrentWeather(arguments);
+            case "get_weather_forecast" -> executeGetWeatherForecast(arguments);
+            case "get_weather_batch" -> executeGetWeatherBatch(arguments);
+            case "get_weather_by_name" -> executeGetWeatherByName(arguments);
+            default -> Mono.just(Map.of("error", "Unknown tool: " + toolName));
+        };
     }
 
-    private Object executeSearchLocation(Map<String, Object> arguments) {
+    private Mono<Object> executeSearchLocation(Map<String, Object> arguments) {
         String name = (String) arguments.get("name");
         Integer count = arguments.containsKey("count") ?
                 ((Number) arguments.get("count")).intValue() : 5;
 
-        List<Location> locations = openMeteoClient.searchLocations(name, count);
-
-        return Map.of(
-                "content", List.of(
-                        Map.of(
-                                "type", "text",
-                                "text", formatLocationsResponse(locations)
-                        )
-                )
-        );
+        return openMeteoClient.searchLocations(name, count)
+                .map(locations -> textContent(formatLocationsResponse(locations)));
     }
 
-    private Object executeGetCurrentWeather(Map<String, Object> arguments) {
+    private Mono<Object> executeGetCurrentWeather(Map<String, Object> arguments) {
         Double latitude = ((Number) arguments.get("latitude")).doubleValue();
         Double longitude = ((Number) arguments.get("longitude")).doubleValue();
 
-        WeatherResponse weather = openMeteoClient.getCurrentWeather(latitude, longitude);
-
-        if (weather == null || weather.getCurrent() == null) {
-            return Map.of(
-                    "content", List.of(
-                            Map.of(
-                                    "type", "text",
-                                    "text", "No weather data found for coordinates: " + latitude + ", " + longitude
-                            )
-                    )
-            );
-        }
-
-        return Map.of(
-                "content", List.of(
-                        Map.of(
-                                "type", "text",
-                                "text", formatCurrentWeatherResponse(weather)
-                        )
-                )
-        );
+        return openMeteoClient.getCurrentWeather(latitude, longitude)
+                .filter(weather -> weather.getCurrent() != null)
+                .map(weather -> textContent(formatCurrentWeatherResponse(weather)))
+                .defaultIfEmpty(textContent("No weather data found for coordinates: " + latitude + ", " + longitude));
     }
 
-    private Object executeGetWeatherForecast(Map<String, Object> arguments) {
+    private Mono<Object> executeGetWeatherForecast(Map<String, Object> arguments) {
         Double latitude = ((Number) arguments.get("latitude")).doubleValue();
         Double longitude = ((Number) arguments.get("longitude")).doubleValue();
         Integer days = arguments.containsKey("days") ?
                 ((Number) arguments.get("days")).intValue() : 7;
 
-        WeatherResponse weather = openMeteoClient.getForecast(latitude, longitude, days);
-
-        if (weather == null || weather.getDaily() == null) {
-            return Map.of(
-                    "content", List.of(
-                            Map.of(
-                                    "type", "text",
-                                    "text", "No forecast data found for coordinates: " + latitude + ", " + longitude
-                            )
-                    )
-            );
+        return openMeteoClient.getForecast(latitude, longitude, days)
+                .filter(weather -> weather.getDaily() != null)
+                .map(weather -> textContent(formatForecastResponse(weather)))
+                .defaultIfEmpty(textContent("No forecast data found for coordinates: " + latitude + ", " + longitude));
+    }
+
+    private Mono<Object> executeGetWeatherBatch(Map<String, Object> arguments) {
+        if (!(arguments.get("locations") instanceof List<?> locations) || locations.isEmpty()) {
+            return Mono.just(Map.of("error", "locations must be a non-empty array"));
+        }
+        if (locations.size() > MAX_BATCH_LOCATIONS) {
+            return Mono.just(Map.of("error", "At most " + MAX_BATCH_LOCATIONS + " locations per call, got " + locations.size()));
+        }
+        Integer days = arguments.containsKey("days") ?
+                ((Number) arguments.get("days")).intValue() : 0;
+
+        List<Coordinates> coordinates = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (Object item : locations) {
+            if (!(item instanceof Map<?, ?> location)
+                    || !(location.get("latitude") instanceof Number latitude)
+                    || !(location.get("longitude") instanceof Number longitude)) {
+                return Mono.just(Map.of("error", "Each location needs numeric latitude and longitude"));
+            }
+            coordinates.add(new Coordinates(latitude.doubleValue(), longitude.doubleValue()));
+            names.add(location.get("name") instanceof String name && !name.isBlank() ? name : null);
+        }
+
+        return openMeteoClient.getWeatherBatch(coordinates, days)
+                .map(weather -> textContent(formatBatchResponse(coordinates, names, weather)));
+    }
+
+    private Mono<Object> executeGetWeatherByName(Map<String, Object> arguments) {
+        String name = (String) arguments.get("name");
+        String country = (String) arguments.get("country");
+        String include = arguments.containsKey("include") ? (String) arguments.get("include") : "current";
+        Integer days = arguments.containsKey("days") ?
+                ((Number) arguments.get("days")).intValue() : 7;
+        if (!BY_NAME_INCLUDES.contains(include)) {
+            return Mono.just(Map.of("error", "include must be one of " + BY_NAME_INCLUDES + ", got: " + include));
         }
 
+        boolean inCountry = country != null && !country.isBlank();
+        int candidates = inCountry ? BY_NAME_CANDIDATES_IN_COUNTRY : BY_NAME_CANDIDATES;
+        return openMeteoClient.searchLocations(name, candidates).flatMap(locations -> {
+            List<Location> matches = !inCountry ? locations : locations.stream()
+                    .filter(loc -> country.equalsIgnoreCase(loc.getCountryCode()) || country.equalsIgnoreCase(loc.getCountry()))
+                    .limit(BY_NAME_CANDIDATES)
+                    .toList();
+            if (matches.isEmpty()) {
+                return Mono.just(textContent("No locations found for: " + name + (country != null ? " (" + country + ")" : "")));
+            }
+
+            Location location = matches.get(0);
+            Mono<WeatherResponse> weather = switch (include) {
+                case "forecast" -> openMeteoClient.getForecast(location.getLatitude(), location.getLongitude(), days);
+                case "both" -> openMeteoClient.getCompleteWeather(location.getLatitude(), location.getLongitude(), days);
+                default -> openMeteoClient.getCurrentWeather(location.getLatitude(), location.getLongitude());
+            };
+            return weather
+                    .map(response -> textContent(formatWeatherByNameResponse(matches, response)))
+                    .switchIfEmpty(Mono.fromSupplier(() -> textContent(formatWeatherByNameResponse(matches, null))));
+        });
+    }
+
+    private static Object textContent(String text) {
         return Map.of(
                 "content", List.of(
                         Map.of(
                                 "type", "text",
-                                "text", formatForecastResponse(weather)
+                                "text", text
                         )
                 )
         );
     }
 
+    /**
+     * The best match with its weather (null if there is none), followed by the other matches
+     */
+    private String formatWeatherByNameResponse(List<Location> matches, WeatherResponse weather) {
+        Location location = matches.get(0);
+        StringBuilder sb = new StringBuilder();
+        sb.append("Location: ").append(describeLocation(location))
+                .append(" (").append(String.format("%.4f", location.getLatitude()))
+                .append(", ").append(String.format("%.4f", location.getLongitude())).append(")\n");
+
+        // Same-name places elsewhere, so the model can ask again with country instead of searching first
+        if (matches.size() > 1) {
+            sb.append("Other matches (call again with \"country\" to pick one):\n");
+            for (Location other : matches.subList(1, matches.size())) {
+                sb.append("  - ").append(describeLocation(other)).append("\n");
+            }
+        }
+        sb.append("\n");
+
+        if (weather == null) {
+            sb.append("No weather data found for this location\n");
+        } else {
+            if (weather.getCurrent() != null) {
+                sb.append(formatCurrentWeatherResponse(weather)).append("\n");
+            }
+            if (weather.getDaily() != null) {
+                sb.append(formatForecastResponse(weather));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String describeLocation(Location location) {
+        StringBuilder sb = new StringBuilder(location.getName());
+        if (location.getAdmin1() != null) {
+            sb.append(", ").append(location.getAdmin1());
+        }
+        if (location.getCountry() != null) {
+            sb.append(", ").append(location.getCountry());
+            if (location.getCountryCode() != null) {
+                sb.append(" (").append(location.getCountryCode()).append(")");
+            }
+        }
+        return sb.toString();
+    }
+
     private String formatLocationsResponse(List<Location> locations) {
         if (locations == null || locations.isEmpty()) {
             return "No locations found";
@@ -340,4 +527,74 @@ public class McpToolService {
 
         return sb.toString();
     }
+
+    /**
+     * One line of current conditions per location, followed by one short line per forecast day
+     */
+    private String formatBatchResponse(List<Coordinates> coordinates, List<String> names, List<WeatherResponse> weather) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Weather for ").append(coordinates.size()).append(" location(s):\n\n");
+
+        for (int i = 0; i < coordinates.size(); i++) {
+            Coordinates point = coordinates.get(i);
+            sb.append(i + 1).append(". ");
+            if (names.get(i) != null) {
+                sb.append(names.get(i)).append(" ");
+            }
+            sb.append("(").append(String.format("%.2f", point.latitude()))
+                    .append(", ").append(String.format("%.2f", point.longitude())).append("): ");
+
+            WeatherResponse response = weather.get(i);
+            if (response == null || response.getCurrent() == null) {
+                sb.append("no data\n");
+                continue;
+            }
+
+            CurrentWeather current = response.getCurrent();
+            List<String> parts = new ArrayList<>();
+            if (current.getTemperature2m() != null) {
+                String temperature = String.format("%.1f°C", current.getTemperature2m());
+                if (current.getApparentTemperature() != null) {
+                    temperature += String.format(" (feels %.1f°C)", current.getApparentTemperature());
+                }
+                parts.add(temperature);
+            }
+            if (current.getWeatherCode() != null) {
+                parts.add(WeatherCodeUtil.getDescription(current.getWeatherCode()));
+            }
+            if (current.getRelativeHumidity2m() != null) {
+                parts.add("humidity " + current.getRelativeHumidity2m() + "%");
+            }
+            if (current.getPrecipitation() != null) {
+                parts.add("precip " + current.getPrecipitation() + " mm");
+            }
+            if (current.getWindSpeed10m() != null) {
+                String wind = String.format("wind %.1f km/h", current.getWindSpeed10m());
+                if (current.getWindDirection10m() != null) {
+                    wind += " from " + current.getWindDirection10m() + "°";
+                }
+                parts.add(wind);
+            }
+            sb.append(String.join(", ", parts)).append("\n");
+
+            DailyWeather daily = response.getDaily();
+            int days = daily != null && daily.getTime() != null ? daily.getTime().size() : 0;
+            for (int day = 0; day < days; day++) {
+                sb.append("   ").append(daily.getTime().get(day)).append(":");
+                if (daily.getTemperature2mMin() != null && daily.getTemperature2mMax() != null &&
+                        day < daily.getTemperature2mMin().size() && day < daily.getTemperature2mMax().size()) {
+                    sb.append(String.format(" %.1f..%.1f°C", daily.getTemperature2mMin().get(day), daily.getTemperature2mMax().get(day)));
+                }
+                if (daily.getWeatherCode() != null && day < daily.getWeatherCode().size()) {
+                    sb.append(", ").append(WeatherCodeUtil.getDescription(daily.getWeatherCode().get(day)));
+                }
+                if (daily.getPrecipitationSum() != null && day < daily.getPrecipitationSum().size()) {
+                    sb.append(String.format(", %.1f mm", daily.getPrecipitationSum().get(day)));
+                }
+                sb.append("\n");
+            }
+        }
+
+        return sb.toString();
+    }
 }
@@ -1,16 +1,32 @@
 package com.aiexploration.mcp.weather.service;
 
+import com.aiexploration.mcp.weather.config.HttpClientConfig;
+import com.aiexploration.mcp.weather.model.Coordinates;
 import com.aiexploration.mcp.weather.model.Location;
 import com.aiexploration.mcp.weather.model.WeatherResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Service
@@ -18,68 +34,137 @@ public class OpenMeteoClient {
 
     private static final String WEATHER_API_URL = "https://api.open-meteo.com/v1/forecast";
     private static final String GEOCODING_API_URL = "https://geocoding-api.open-meteo.com/v1/search";
+    private static final String CURRENT_VARIABLES = "temperature_2m,relative_humidity_2m,apparent_temperature,precipitation,weather_code,wind_speed_10m,wind_direction_10m";
+    private static final String DAILY_VARIABLES = "temperature_2m_max,temperature_2m_min,precipitation_sum,weather_code,wind_speed_10m_max";
+    // Prefetch stays a small share of the upstream concurrency limit
+    private static final int PREFETCH_CONCURRENCY = 2;
 
     private final WebClient weatherWebClient;
     private final WebClient geocodingWebClient;
     private final ObjectMapper objectMapper;
+    private final GeocodingCache geocodingCache;
+    private final WeatherCache weatherCache;
+    private final UpstreamLimiter upstreamLimiter;
+    private final HttpClient httpClient;
+    private final HttpClientConfig httpClientConfig;
+    private final SingleFlight<LocationQuery, List<Location>> locationFlights = new SingleFlight<>();
+    private final SingleFlight<WeatherCache.Key, WeatherResponse> weatherFlights = new SingleFlight<>();
 
-    public OpenMeteoClient(ObjectMapper objectMapper) {
+    public OpenMeteoClient(ObjectMapper objectMapper, GeocodingCache geocodingCache, WeatherCache weatherCache,
+                           UpstreamLimiter upstreamLimiter, HttpClient openMeteoHttpClient, HttpClientConfig httpClientConfig) {
         this.objectMapper = objectMapper;
+        this.geocodingCache = geocodingCache;
+        this.weatherCache = weatherCache;
+        this.upstreamLimiter = upstreamLimiter;
+        this.httpClient = openMeteoHttpClient;
+        this.httpClientConfig = httpClientConfig;
+
+        // Both clients share one connection pool
+        ReactorClientHttpConnector connector = new ReactorClientHttpConnector(openMeteoHttpClient);
         this.weatherWebClient = WebClient.builder()
+                .clientConnector(connector)
                 .baseUrl(WEATHER_API_URL)
                 .build();
         this.geocodingWebClient = WebClient.builder()
+                .clientConnector(connector)
                 .baseUrl(GEOCODING_API_URL)
                 .build();
     }
 
     /**
-     * Search for locations by name
+     * Open weather.http.warmup-connections connections to each Open-Meteo host in the background,
+     * so the first tool calls do not pay for DNS, TCP and TLS setup
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        int connections = httpClientConfig.getWarmupConnections();
+        if (connections <= 0) {
+            return;
+        }
+
+        httpClient.warmup()
+                .thenMany(Flux.just(weatherWebClient, geocodingWebClient))
+                .flatMap(client -> Flux.range(0, connections)
+                        .flatMap(i -> client.head().exchangeToMono(ClientResponse::releaseBody)))
+                .then()
+                .subscribe(
+                        null,
+                        e -> log.warn("Open-Meteo connection warm-up failed: {}", e.getMessage()),
+                        () -> log.info("Opened {} warm-up connection(s) per Open-Meteo host", connections));
+    }
+
+    /**
+     * Refresh the most requested cells (weather.cache.weather.prefetch-top) once they are stale, so the next
+     * callers get new data without waiting. Open-Meteo publishes new values at the update boundary, which is
+     * also when entries turn stale, so refreshing any earlier would only fetch the same values again.
+     */
+    @Scheduled(initialDelayString = "${weather.cache.weather.prefetch-interval:15000}",
+            fixedDelayString = "${weather.cache.weather.prefetch-interval:15000}")
+    public void prefetchPopular() {
+        Flux.fromIterable(weatherCache.getPopular())
+                .filter(weatherCache::needsRefresh)
+                .flatMap(key -> weatherCache.refresh(key, this::fetchWeather), PREFETCH_CONCURRENCY)
+                .count()
+                .subscribe(refreshed -> {
+                    if (refreshed > 0) {
+                        log.debug("Prefetched {} popular weather cell(s)", refreshed);
+                    }
+                });
+    }
+
+    /**
+     * Search for locations by name. Results are served from {@link GeocodingCache}.
      *
      * @param name  Location name to search for
      * @param count Maximum number of results (default: 5)
      * @return List of matching locations
      */
-    public List<Location> searchLocations(String name, Integer count) {
-        try {
-            log.info("Searching for locations: {}", name);
-            Integer resultCount = (count != null && count > 0) ? count : 5;
-
-            return geocodingWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("name", name)
-                            .queryParam("count", resultCount)
-                            .queryParam("format", "json")
-                            .build())
-                    .retrieve()
-                    .bodyToMono(String.class)
-                    .map(response -> {
-                        try {
-                            // Parse the response to extract results array
-                            JsonNode rootNode = objectMapper.readTree(response);
-                            JsonNode resultsNode = rootNode.get("results");
-
-                            if (resultsNode != null && resultsNode.isArray()) {
-                                return objectMapper.convertValue(
-                                        resultsNode,
-                                        objectMapper.getTypeFactory().constructCollectionType(List.class, Location.class)
-                                );
-                            }
-                            return Collections.<Location>emptyList();
-                        } catch (Exception e) {
-                            log.error("Error parsing location search response", e);
-                            return Collections.<Location>emptyList();
+    public Mono<List<Location>> searchLocations(String name, Integer count) {
+        int resultCount = (count != null && count > 0) ? count : 5;
+        return geocodingCache.get(name, resultCount, () -> fetchLocations(name, resultCount));
+    }
+
+    /**
+     * Call the geocoding API, empty if it failed (so the failure is not cached as "no results").
+     * Concurrent identical queries share one upstream call. Overload is passed on as {@link UpstreamOverloadedException}.
+     */
+    private Mono<List<Location>> fetchLocations(String name, int count) {
+        LocationQuery query = new LocationQuery(GeocodingCache.normalize(name), count);
+        return locationFlights.execute(query, () -> upstreamLimiter.execute("geocoding", () -> requestLocations(name, count)))
+                .onErrorResume(e -> !(e instanceof UpstreamOverloadedException), e -> {
+                    log.error("Error searching for locations: {}", name, e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<List<Location>> requestLocations(String name, int count) {
+        log.info("Searching for locations: {}", name);
+
+        return geocodingWebClient.get()
+                .uri(uriBuilder -> uriBuilder
+                        .queryParam("name", name)
+                        .queryParam("count", count)
+                        .queryParam("format", "json")
+                        .build())
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(response -> {
+                    try {
+                        // Parse the response to extract results array
+                        JsonNode rootNode = objectMapper.readTree(response);
+                        JsonNode resultsNode = rootNode.get("results");
+
+                        if (resultsNode != null && resultsNode.isArray()) {
+                            return objectMapper.convertValue(
+                                    resultsNode,
+                                    objectMapper.getTypeFactory().constructCollectionType(List.class, Location.class)
+                            );
                         }
-                    })
-                    .onErrorResume(e -> {
-                        log.error("Error searching for locations: {}", name, e);
-                        return Mono.just(Collections.emptyList());
-                    })
-                    .block();
-        } catch (Exception e) {
-            log.error("Error searching for locations: {}", name, e);
-            return Collections.emptyList();
-        }
+                        return Collections.<Location>emptyList();
+                    } catch (Exception e) {
+                        throw new IllegalStateException("Error parsing location search response", e);
+                    }
+                });
     }
 
     /**
@@ -87,30 +172,11 @@ public class OpenMeteoClient {
      *
      * @param latitude  Latitude coordinate
      * @param longitude Longitude coordinate
-     * @return Current weather data
+     * @return Current weather data, empty if the API failed
      */
-    public WeatherResponse getCurrentWeather(Double latitude, Double longitude) {
-        try {
-            log.info("Fetching current weather for coordinates: {}, {}", latitude, longitude);
-
-            return weatherWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("latitude", latitude)
-                            .queryParam("longitude", longitude)
-                            .queryParam("current", "temperature_2m,relative_humidity_2m,apparent_temperature,precipitation,weather_code,wind_speed_10m,wind_direction_10m")
-                            .queryParam("timezone", "auto")
-                            .build())
-                    .retrieve()
-                    .bodyToMono(WeatherResponse.class)
-                    .onErrorResume(e -> {
-                        log.error("Error fetching current weather for: {}, {}", latitude, longitude, e);
-                        return Mono.empty();
-                    })
-                    .block();
-        } catch (Exception e) {
-            log.error("Error fetching current weather for: {}, {}", latitude, longitude, e);
-            return null;
-        }
+    public Mono<WeatherResponse> getCurrentWeather(Double latitude, Double longitude) {
+        log.info("Fetching current weather for coordinates: {}, {}", latitude, longitude);
+        return getWeather(weatherCache.key(latitude, longitude, CURRENT_VARIABLES, null, null));
     }
 
     /**
@@ -119,32 +185,12 @@ public class OpenMeteoClient {
      * @param latitude  Latitude coordinate
      * @param longitude Longitude coordinate
      * @param days      Number of forecast days (1-16, default: 7)
-     * @return Weather forecast data
+     * @return Weather forecast data, empty if the API failed
      */
-    public WeatherResponse getForecast(Double latitude, Double longitude, Integer days) {
-        try {
-            log.info("Fetching {}-day forecast for coordinates: {}, {}", days, latitude, longitude);
-            Integer forecastDays = (days != null && days > 0 && days <= 16) ? days : 7;
-
-            return weatherWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("latitude", latitude)
-                            .queryParam("longitude", longitude)
-                            .queryParam("daily", "temperature_2m_max,temperature_2m_min,precipitation_sum,weather_code,wind_speed_10m_max")
-                            .queryParam("timezone", "auto")
-                            .queryParam("forecast_days", forecastDays)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(WeatherResponse.class)
-                    .onErrorResume(e -> {
-                        log.error("Error fetching forecast for: {}, {}", latitude, longitude, e);
-                        return Mono.empty();
-                    })
-                    .block();
-        } catch (Exception e) {
-            log.error("Error fetching forecast for: {}, {}", latitude, longitude, e);
-            return null;
-        }
+    public Mono<WeatherResponse> getForecast(Double latitude, Double longitude, Integer days) {
+        log.info("Fetching {}-day forecast for coordinates: {}, {}", days, latitude, longitude);
+        Integer forecastDays = (days != null && days > 0 && days <= 16) ? days : 7;
+        return getWeather(weatherCache.key(latitude, longitude, null, DAILY_VARIABLES, forecastDays));
     }
 
     /**
@@ -153,32 +199,165 @@ public class OpenMeteoClient {
      * @param latitude  Latitude coordinate
      * @param longitude Longitude coordinate
      * @param days      Number of forecast days (1-16, default: 7)
-     * @return Complete weather data with current and daily forecast
+     * @return Complete weather data with current and daily forecast, empty if the API failed
      */
-    public WeatherResponse getCompleteWeather(Double latitude, Double longitude, Integer days) {
-        try {
-            log.info("Fetching complete weather data for coordinates: {}, {}", latitude, longitude);
-            Integer forecastDays = (days != null && days > 0 && days <= 16) ? days : 7;
-
-            return weatherWebClient.get()
-                    .uri(uriBuilder -> uriBuilder
-                            .queryParam("latitude", latitude)
-                            .queryParam("longitude", longitude)
-                            .queryParam("current", "temperature_2m,relative_humidity_2m,apparent_temperature,precipitation,weather_code,wind_speed_10m,wind_direction_10m")
-                            .queryParam("daily", "temperature_2m_max,temperature_2m_min,precipitation_sum,weather_code,wind_speed_10m_max")
-                            .queryParam("timezone", "auto")
-                            .queryParam("forecast_days", forecastDays)
-                            .build())
-                    .retrieve()
-                    .bodyToMono(WeatherResponse.class)
-                    .onErrorResume(e -> {
-                        log.error("Error fetching complete weather for: {}, {}", latitude, longitude, e);
-                        return Mono.empty();
-                    })
-                    .block();
-        } catch (Exception e) {
-            log.error("Error fetching complete weather for: {}, {}", latitude, longitude, e);
-            return null;
-        }
+    public Mono<WeatherResponse> getCompleteWeather(Double latitude, Double longitude, Integer days) {
+        log.info("Fetching complete weather data for coordinates: {}, {}", latitude, longitude);
+        Integer forecastDays = (days != null && days > 0 && days <= 16) ? days : 7;
+        return getWeather(weatherCache.key(latitude, longitude, CURRENT_VARIABLES, DAILY_VARIABLES, forecastDays));
+    }
+
+    /**
+     * Current weather, plus a daily forecast when days is 1-16, for many coordinates.
+     * Cached cells are served from {@link WeatherCache}; all others are fetched with one
+     * multi-coordinate upstream call (Open-Meteo accepts comma-separated latitude/longitude lists).
+     *
+     * @return responses in the order of the coordinates, null for locations without data
+     */
+    public Mono<List<WeatherResponse>> getWeatherBatch(List<Coordinates> coordinates, Integer days) {
+        log.info("Fetching weather for {} locations", coordinates.size());
+        Integer forecastDays = (days != null && days > 0 && days <= 16) ? days : null;
+        String daily = forecastDays != null ? DAILY_VARIABLES : null;
+
+        List<WeatherCache.Key> keys = coordinates.stream()
+                .map(c -> weatherCache.key(c.latitude(), c.longitude(), CURRENT_VARIABLES, daily, forecastDays))
+                .toList();
+
+        return Mono.defer(() -> {
+            // Locations in the same grid cell need the cell only once
+            Map<WeatherCache.Key, WeatherResponse> found = new HashMap<>();
+            Set<WeatherCache.Key> missing = new LinkedHashSet<>();
+            for (WeatherCache.Key key : keys) {
+                if (found.containsKey(key) || missing.contains(key)) {
+                    continue;
+                }
+                WeatherResponse cached = weatherCache.getIfPresent(key);
+                if (cached != null) {
+                    found.put(key, cached);
+                } else {
+                    missing.add(key);
+                }
+            }
+
+            if (missing.isEmpty()) {
+                return Mono.just(keys.stream().map(found::get).toList());
+            }
+
+            List<WeatherCache.Key> fetchKeys = new ArrayList<>(missing);
+            Mono<List<WeatherResponse>> fetched = fetchKeys.size() == 1
+                    ? fetchWeather(fetchKeys.get(0)).map(weather -> List.of(weather)).defaultIfEmpty(Collections.singletonList(null))
+                    : fetchWeatherBatch(fetchKeys);
+            return fetched.map(results -> {
+                for (int i = 0; i < fetchKeys.size(); i++) {
+                    WeatherResponse weather = results.get(i);
+                    if (weather != null) {
+                        weatherCache.put(fetchKeys.get(i), weather);
+                        found.put(fetchKeys.get(i), weather);
+                    }
+                }
+                return keys.stream().map(found::get).toList();
+            });
+        });
+    }
+
+    /**
+     * One upstream call for many cells with the same variables, null entries if it failed.
+     * Overload is passed on as {@link UpstreamOverloadedException}.
+     */
+    private Mono<List<WeatherResponse>> fetchWeatherBatch(List<WeatherCache.Key> keys) {
+        return upstreamLimiter.execute(forecastClass(keys.get(0), keys.size()), () -> requestWeatherBatch(keys))
+                .onErrorResume(e -> !(e instanceof UpstreamOverloadedException), e -> {
+                    log.error("Error fetching weather for {} locations", keys.size(), e);
+                    return Mono.just(Collections.nCopies(keys.size(), null));
+                });
+    }
+
+    private Mono<List<WeatherResponse>> requestWeatherBatch(List<WeatherCache.Key> keys) {
+        WeatherCache.Key first = keys.get(0);
+        String latitudes = keys.stream().map(key -> String.valueOf(key.latitude())).collect(Collectors.joining(","));
+        String longitudes = keys.stream().map(key -> String.valueOf(key.longitude())).collect(Collectors.joining(","));
+
+        return weatherWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder
+                            .queryParam("latitude", latitudes)
+                            .queryParam("longitude", longitudes)
+                            .queryParam("current", first.current());
+                    if (first.daily() != null) {
+                        uriBuilder.queryParam("daily", first.daily())
+                                .queryParam("forecast_days", first.days());
+                    }
+                    return uriBuilder.queryParam("timezone", "auto").build();
+                })
+                .retrieve()
+                .bodyToMono(String.class)
+                .map(body -> {
+                    try {
+                        // A list of coordinates is answered with an array of per-location objects
+                        JsonNode root = objectMapper.readTree(body);
+                        Iterable<JsonNode> locations = root.isArray() ? root : List.of(root);
+                        List<WeatherResponse> responses = new ArrayList<>();
+                        for (JsonNode location : locations) {
+                            responses.add(objectMapper.treeToValue(location, WeatherResponse.class));
+                        }
+                        if (responses.size() != keys.size()) {
+                            throw new IllegalStateException("Expected " + keys.size() + " locations but got " + responses.size());
+                        }
+                        return responses;
+                    } catch (JsonProcessingException e) {
+                        throw new IllegalStateException("Error parsing multi-location weather response", e);
+                    }
+                });
+    }
+
+    /**
+     * Weather for a grid cell, served from {@link WeatherCache}
+     */
+    private Mono<WeatherResponse> getWeather(WeatherCache.Key key) {
+        return weatherCache.get(key, this::fetchWeather);
+    }
+
+    /**
+     * Call the forecast API for the snapped coordinates of the key, empty if it failed.
+     * Concurrent requests for the same cell and variables share one upstream call.
+     * Overload is passed on as {@link UpstreamOverloadedException}.
+     */
+    private Mono<WeatherResponse> fetchWeather(WeatherCache.Key key) {
+        return weatherFlights.execute(key, () -> upstreamLimiter.execute(forecastClass(key, 1), () -> requestWeather(key)))
+                .onErrorResume(e -> !(e instanceof UpstreamOverloadedException), e -> {
+                    log.error("Error fetching weather for: {}, {}", key.latitude(), key.longitude(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<WeatherResponse> requestWeather(WeatherCache.Key key) {
+        return weatherWebClient.get()
+                .uri(uriBuilder -> {
+                    uriBuilder
+                            .queryParam("latitude", key.latitude())
+                            .queryParam("longitude", key.longitude());
+                    if (key.current() != null) {
+                        uriBuilder.queryParam("current", key.current());
+                    }
+                    if (key.daily() != null) {
+                        uriBuilder.queryParam("daily", key.daily())
+                                .queryParam("forecast_days", key.days());
+                    }
+                    return uriBuilder.queryParam("timezone", "auto").build();
+                })
+                .retrieve()
+                .bodyToMono(WeatherResponse.class);
+    }
+
+    /**
+     * Request class for {@link UpstreamLimiter}: forecast latency grows with the number of locations and days,
+     * so both are bucketed by powers of two (50 locations over 16 days is much slower than one current reading)
+     */
+    private static String forecastClass(WeatherCache.Key key, int locations) {
+        int days = key.daily() != null && key.days() != null ? key.days() : 0;
+        return "forecast/" + Integer.highestOneBit(locations) + "x" + Integer.highestOneBit(days);
+    }
+
+    private record LocationQuery(String normalizedName, int count) {
     }
 }
@@ -0,0 +1,127 @@
+package com.aiexploration.mcp.weather.service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Top-K heavy hitters over recent requests (Space-Saving): at most capacity keys are counted,
+ * a new key replaces the least counted one and inherits its count. Every window all counts are halved,
+ * so popularity reflects recent traffic rather than all time.
+ * Keys are spread over independently locked stripes by hash, each counting its share of the capacity,
+ * so concurrent recordings rarely contend and replacing a key scans only its stripe
+ * (about a dozen entries with the defaults).
+ */
+final class PopularityTracker<K> {
+
+    private static final int MAX_STRIPES = 16;
+
+    private final Stripe<K>[] stripes;
+    private final long windowNanos;
+    private final AtomicLong windowStart = new AtomicLong(System.nanoTime());
+
+    @SuppressWarnings("unchecked")
+    PopularityTracker(int capacity, Duration window) {
+        int count = Math.max(1, Math.min(MAX_STRIPES, Integer.highestOneBit(Math.max(capacity, 1))));
+        this.stripes = new Stripe[count];
+        for (int i = 0; i < count; i++) {
+            // Spread the remainder so the stripes add up to the capacity
+            stripes[i] = new Stripe<>(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+        this.windowNanos = window.toNanos();
+    }
+
+    void record(K key) {
+        decayIfDue();
+        stripe(key).record(key);
+    }
+
+    /**
+     * The k most requested keys, most popular first
+     */
+    List<K> top(int k) {
+        decayIfDue();
+        List<Map.Entry<K, Long>> entries = new ArrayList<>();
+        for (Stripe<K> stripe : stripes) {
+            stripe.copyTo(entries);
+        }
+        return entries.stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()))
+                .limit(k)
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    int size() {
+        int size = 0;
+        for (Stripe<K> stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    private Stripe<K> stripe(K key) {
+        int hash = key.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+
+    /**
+     * Halve the counts once per window; only the thread that moves the window start does it
+     */
+    private void decayIfDue() {
+        long now = System.nanoTime();
+        long start = windowStart.get();
+        if (now - start < windowNanos || !windowStart.compareAndSet(start, now)) {
+            return;
+        }
+        for (Stripe<K> stripe : stripes) {
+            stripe.decay();
+        }
+    }
+
+    private static final class Stripe<K> {
+
+        private final int capacity;
+        private final Map<K, Long> counts = new HashMap<>();
+
+        Stripe(int capacity) {
+            this.capacity = capacity;
+        }
+
+        synchronized void record(K key) {
+            Long count = counts.get(key);
+            if (count != null) {
+                counts.put(key, count + 1);
+            } else if (counts.size() < capacity) {
+                counts.put(key, 1L);
+            } else if (capacity > 0) {
+                Map.Entry<K, Long> least = null;
+                for (Map.Entry<K, Long> entry : counts.entrySet()) {
+                    if (least == null || entry.getValue() < least.getValue()) {
+                        least = entry;
+                    }
+                }
+                long inherited = least.getValue();
+                counts.remove(least.getKey());
+                counts.put(key, inherited + 1);
+            }
+        }
+
+        synchronized void copyTo(List<Map.Entry<K, Long>> entries) {
+            counts.forEach((key, count) -> entries.add(Map.entry(key, count)));
+        }
+
+        synchronized int size() {
+            return counts.size();
+        }
+
+        synchronized void decay() {
+            counts.replaceAll((key, count) -> count / 2);
+            counts.values().removeIf(count -> count == 0);
+        }
+    }
+}
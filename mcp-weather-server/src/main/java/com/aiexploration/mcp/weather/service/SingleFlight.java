@@ -0,0 +1,30 @@
+package com.aiexploration.mcp.weather.service;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Request coalescing: callers asking for a key while a call for it is in flight subscribe to that call
+ * instead of starting their own. The key is dropped as soon as the call terminates, so nothing is kept
+ * after completion (caching is left to the caches in front of it). The call is cancelled only when every
+ * subscriber has cancelled.
+ */
+final class SingleFlight<K, V> {
+
+    private final Map<K, Mono<V>> inFlight = new ConcurrentHashMap<>();
+
+    Mono<V> execute(K key, Supplier<Mono<V>> call) {
+        return Mono.defer(() -> inFlight.computeIfAbsent(key, k -> {
+            AtomicReference<Mono<V>> flight = new AtomicReference<>();
+            Mono<V> shared = call.get()
+                    .doFinally(signal -> inFlight.remove(k, flight.get()))
+                    .share();
+            flight.set(shared);
+            return shared;
+        }));
+    }
+}
@@ -0,0 +1,239 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.UpstreamConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientRequestException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Bulkhead in front of Open-Meteo with an adaptive concurrency limit (AIMD).
+ * The limit grows by about one per round trip while latency stays within weather.upstream.latency-tolerance
+ * of the baseline and the limit is in use; it shrinks by weather.upstream.backoff-ratio when latency rises
+ * above that or Open-Meteo throttles, fails or times out.
+ * The baseline is the lowest latency of the previous sample window of the same request class (geocoding,
+ * a single forecast, a batch of a given size...), so a naturally slow request is not mistaken for congestion
+ * by comparing it with a fast one.
+ * It shrinks at most once per round trip: calls that started before the last decrease were sent under the old
+ * limit, so their slow responses or failures do not lower it again.
+ * Calls over the limit wait in a short FIFO queue; when the queue is full or the wait exceeds
+ * weather.upstream.max-wait the call fails with {@link UpstreamOverloadedException}.
+ */
+@Slf4j
+@Component
+public class UpstreamLimiter {
+
+    private static final int RTT_WINDOW = 100;
+
+    private final UpstreamConfig config;
+    private final Deque<Waiter> queue = new ArrayDeque<>();
+
+    private double limit;
+    private int inFlight;
+    private final Map<String, RttBaseline> baselines = new HashMap<>();
+    private long lastDecrease = System.nanoTime();
+    private long rejected;
+    private long dropped;
+
+    public UpstreamLimiter(UpstreamConfig config) {
+        this.config = config;
+        this.limit = config.getInitialLimit();
+    }
+
+    /**
+     * Run the call once a slot is free. Throttling by Open-Meteo (429, 503) is reported as
+     * {@link UpstreamOverloadedException} as well.
+     *
+     * @param requestClass calls of similar latency (endpoint and size), whose latencies are compared with each other
+     */
+    public <T> Mono<T> execute(String requestClass, Supplier<Mono<T>> call) {
+        return Mono.usingWhen(
+                acquire(),
+                start -> call.get().onErrorMap(UpstreamLimiter::isThrottled, e -> overloaded("Open-Meteo is throttling requests")),
+                start -> Mono.fromRunnable(() -> release(start, Outcome.SUCCESS, requestClass)),
+                (start, e) -> Mono.fromRunnable(() -> release(start, isOverload(e) ? Outcome.DROPPED : Outcome.IGNORED, requestClass)),
+                start -> Mono.fromRunnable(() -> release(start, Outcome.IGNORED, requestClass)));
+    }
+
+    public synchronized Map<String, Object> getStats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("limit", (int) limit);
+        result.put("inFlight", inFlight);
+        result.put("queued", queue.size());
+        result.put("rejected", rejected);
+        result.put("dropped", dropped);
+        Map<String, Double> baselineLatency = new TreeMap<>();
+        baselines.forEach((requestClass, baseline) -> baselineLatency.put(requestClass, baseline.rtt / 1_000_000.0));
+        result.put("baselineLatencyMs", baselineLatency);
+        return result;
+    }
+
+    /**
+     * A slot, with the start time of the call; waits in the queue when the limit is reached
+     */
+    private Mono<Long> acquire() {
+        return Mono.defer(() -> {
+            Waiter waiter = new Waiter();
+            synchronized (this) {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return Mono.just(System.nanoTime());
+                }
+                if (queue.size() >= config.getMaxQueue()) {
+                    return Mono.error(reject("Too many concurrent Open-Meteo requests"));
+                }
+                queue.addLast(waiter);
+            }
+            Schedulers.parallel().schedule(() -> expire(waiter), config.getMaxWait().toMillis(), TimeUnit.MILLISECONDS);
+
+            return waiter.slot.asMono()
+                    .filter(start -> waiter.settled.compareAndSet(false, true))
+                    .doOnCancel(() -> abandon(waiter));
+        });
+    }
+
+    private void expire(Waiter waiter) {
+        synchronized (this) {
+            if (!queue.remove(waiter)) {
+                return;
+            }
+        }
+        waiter.slot.tryEmitError(reject("Timed out waiting for an Open-Meteo request slot"));
+    }
+
+    /**
+     * The caller went away while waiting; a slot granted to it meanwhile is free again
+     */
+    private void abandon(Waiter waiter) {
+        synchronized (this) {
+            if (queue.remove(waiter)) {
+                return;
+            }
+        }
+        if (waiter.settled.compareAndSet(false, true)) {
+            release(System.nanoTime(), Outcome.IGNORED, null);
+        }
+    }
+
+    private void release(long start, Outcome outcome, String requestClass) {
+        long rtt = System.nanoTime() - start;
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            switch (outcome) {
+                case SUCCESS -> sample(start, rtt, baselines.computeIfAbsent(requestClass, c -> new RttBaseline()));
+                case DROPPED -> {
+                    dropped++;
+                    decrease(start);
+                }
+                case IGNORED -> {
+                }
+            }
+            inFlight--;
+            while (inFlight < (int) limit && !queue.isEmpty()) {
+                inFlight++;
+                granted.add(queue.pollFirst());
+            }
+        }
+        long now = System.nanoTime();
+        granted.forEach(waiter -> waiter.slot.tryEmitValue(now));
+    }
+
+    private void sample(long start, long rtt, RttBaseline baseline) {
+        baseline.add(rtt);
+        if (rtt > baseline.rtt * config.getLatencyTolerance()) {
+            decrease(start);
+        } else if (inFlight >= limit / 2) {
+            limit = Math.min(config.getMaxLimit(), limit + 1.0 / limit);
+        }
+    }
+
+    /**
+     * Multiplicative decrease, unless the call started before the previous one
+     */
+    private void decrease(long start) {
+        if (start - lastDecrease < 0) {
+            return;
+        }
+        lastDecrease = System.nanoTime();
+        double previous = limit;
+        limit = Math.max(config.getMinLimit(), limit * config.getBackoffRatio());
+        if ((int) previous != (int) limit) {
+            log.debug("Open-Meteo concurrency limit lowered to {}", (int) limit);
+        }
+    }
+
+    private synchronized UpstreamOverloadedException reject(String message) {
+        rejected++;
+        return overloaded(message);
+    }
+
+    private UpstreamOverloadedException overloaded(String message) {
+        return new UpstreamOverloadedException(message, config.getRetryAfter());
+    }
+
+    private static boolean isThrottled(Throwable e) {
+        if (!(e instanceof WebClientResponseException response)) {
+            return false;
+        }
+        int status = response.getStatusCode().value();
+        return status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+    }
+
+    /**
+     * Errors that signal a congested upstream, as opposed to a bad request
+     */
+    private static boolean isOverload(Throwable e) {
+        return e instanceof UpstreamOverloadedException
+                || e instanceof TimeoutException
+                || e instanceof WebClientRequestException
+                || e instanceof WebClientResponseException response && response.getStatusCode().is5xxServerError();
+    }
+
+    /**
+     * Lowest latency of the previous sample window of one request class. It follows the latest window,
+     * so it can also move up.
+     */
+    private static final class RttBaseline {
+        private long rtt;
+        private long windowMin = Long.MAX_VALUE;
+        private int windowSamples;
+
+        void add(long sample) {
+            windowMin = Math.min(windowMin, sample);
+            if (rtt == 0 || ++windowSamples >= RTT_WINDOW) {
+                rtt = windowMin;
+                windowMin = Long.MAX_VALUE;
+                windowSamples = 0;
+            }
+        }
+    }
+
+    private enum Outcome {
+        SUCCESS, DROPPED, IGNORED
+    }
+
+    /**
+     * A queued caller. settled makes sure a granted slot is either taken by the caller or handed back, once.
+     */
+    private static final class Waiter {
+        private final Sinks.One<Long> slot = Sinks.one();
+        private final AtomicBoolean settled = new AtomicBoolean();
+    }
+}
@@ -0,0 +1,20 @@
+package com.aiexploration.mcp.weather.service;
+
+import lombok.Getter;
+
+import java.time.Duration;
+
+/**
+ * Open-Meteo cannot take the call right now: our concurrency limit and wait queue are exhausted,
+ * or Open-Meteo itself throttled us. The call may be retried after {@link #getRetryAfter()}.
+ */
+@Getter
+public class UpstreamOverloadedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public UpstreamOverloadedException(String message, Duration retryAfter) {
+        super(message);
+        this.retryAfter = retryAfter;
+    }
+}
@@ -0,0 +1,217 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.CacheConfig;
+import com.aiexploration.mcp.weather.model.WeatherResponse;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * In-process cache of Open-Meteo weather responses.
+ * Coordinates are snapped to a grid of weather.cache.weather.grid-step degrees, so nearby requests share
+ * an entry (and the upstream call is made for the snapped point). An entry is fresh until the next upstream
+ * update boundary: every current.interval seconds (15 minutes) for current conditions, every
+ * weather.cache.weather.forecast-interval for daily forecasts, rather than for a fixed TTL.
+ * After that it is stale for weather.cache.weather.stale-ttl: {@link #get} still answers with it at once
+ * and refreshes it in the background (stale-while-revalidate).
+ * Requested cells are counted by a {@link PopularityTracker}, so the most popular ones can be refreshed
+ * before anyone asks for them again.
+ */
+@Slf4j
+@Component
+public class WeatherCache {
+
+    private final CacheConfig.Weather config;
+    private final Cache<Key, Entry> cache;
+    private final PopularityTracker<Key> popularity;
+    private final Set<Key> refreshing = ConcurrentHashMap.newKeySet();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+
+    public WeatherCache(CacheConfig cacheConfig) {
+        this.config = cacheConfig.getWeather();
+        Duration staleTtl = config.getStaleTtl();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(config.getMaxSize())
+                .expireAfter(new Expiry<Key, Entry>() {
+                    @Override
+                    public long expireAfterCreate(Key key, Entry entry, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), entry.expiresAt().plus(staleTtl)).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, entry, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Key key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        this.popularity = new PopularityTracker<>(config.getPopularityCapacity(), config.getPopularityWindow());
+    }
+
+    /**
+     * Cache key of a request: grid cell of the coordinates plus the requested variables
+     *
+     * @param current comma-separated current variables, null if not requested
+     * @param daily   comma-separated daily variables, null if not requested
+     */
+    public Key key(double latitude, double longitude, String current, String daily, Integer days) {
+        double step = config.getGridStep();
+        return new Key(Math.round(latitude / step), Math.round(longitude / step), step, current, daily, days);
+    }
+
+    /**
+     * Cached response for the key, loading it on a miss. A stale response is returned as is and refreshed
+     * in the background. An empty loader result (the API failed) is not cached.
+     */
+    public Mono<WeatherResponse> get(Key key, Function<Key, Mono<WeatherResponse>> loader) {
+        return Mono.defer(() -> {
+            popularity.record(key);
+            Entry cached = cache.getIfPresent(key);
+            if (cached == null) {
+                return loader.apply(key).doOnNext(weather -> put(key, weather));
+            }
+
+            if (cached.isStale()) {
+                log.debug("Weather cache stale hit: {}, {} since {}", key.latitude(), key.longitude(), cached.expiresAt());
+                staleHits.increment();
+                refresh(key, loader).subscribe();
+            } else {
+                log.debug("Weather cache hit: {}, {} until {}", key.latitude(), key.longitude(), cached.expiresAt());
+            }
+            return Mono.just(cached.weather());
+        });
+    }
+
+    /**
+     * Fresh cached response, null when there is none or it is stale
+     */
+    public WeatherResponse getIfPresent(Key key) {
+        popularity.record(key);
+        Entry cached = cache.getIfPresent(key);
+        if (cached == null || cached.isStale()) {
+            return null;
+        }
+        log.debug("Weather cache hit: {}, {} until {}", key.latitude(), key.longitude(), cached.expiresAt());
+        return cached.weather();
+    }
+
+    public void put(Key key, WeatherResponse weather) {
+        cache.put(key, new Entry(weather, nextUpdate(key, weather, Instant.now())));
+    }
+
+    /**
+     * Reload the entry unless a refresh of it is already running. Emits the new response,
+     * empty if the refresh was skipped or failed (the old entry stays).
+     */
+    public Mono<WeatherResponse> refresh(Key key, Function<Key, Mono<WeatherResponse>> loader) {
+        return Mono.defer(() -> {
+            if (!refreshing.add(key)) {
+                return Mono.empty();
+            }
+            refreshes.increment();
+            return loader.apply(key)
+                    .doOnNext(weather -> put(key, weather))
+                    .onErrorResume(e -> {
+                        log.debug("Weather refresh failed for {}, {}: {}", key.latitude(), key.longitude(), e.getMessage());
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> refreshing.remove(key));
+        });
+    }
+
+    /**
+     * Whether the entry is stale or gone, without counting as a cache access
+     */
+    public boolean needsRefresh(Key key) {
+        Entry cached = cache.policy().getIfPresentQuietly(key);
+        return cached == null || cached.isStale();
+    }
+
+    /**
+     * The most requested cells recently, most popular first (weather.cache.weather.prefetch-top)
+     */
+    public List<Key> getPopular() {
+        return popularity.top(config.getPrefetchTop());
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("size", cache.estimatedSize());
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRatio", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("staleHits", staleHits.sum());
+        result.put("refreshes", refreshes.sum());
+        result.put("trackedCells", popularity.size());
+        return result;
+    }
+
+    /**
+     * Next boundary of the shortest update interval among the requested variables.
+     * Open-Meteo updates on boundaries aligned to the epoch (e.g. :00, :15, :30, :45).
+     */
+    private Instant nextUpdate(Key key, WeatherResponse weather, Instant now) {
+        long interval = Long.MAX_VALUE;
+        if (key.current() != null) {
+            interval = weather.getCurrent() != null && weather.getCurrent().getInterval() != null
+                    && weather.getCurrent().getInterval() > 0
+                    ? weather.getCurrent().getInterval()
+                    : config.getCurrentInterval().toSeconds();
+        }
+        if (key.daily() != null) {
+            interval = Math.min(interval, config.getForecastInterval().toSeconds());
+        }
+        if (interval == Long.MAX_VALUE || interval <= 0) {
+            return now;
+        }
+        return Instant.ofEpochSecond((now.getEpochSecond() / interval + 1) * interval);
+    }
+
+    /**
+     * Grid cell (row, column of the given step) and requested variables
+     */
+    public record Key(long row, long column, double step, String current, String daily, Integer days) {
+
+        public double latitude() {
+            return snap(row);
+        }
+
+        public double longitude() {
+            return snap(column);
+        }
+
+        private double snap(long cell) {
+            // Rounded to 6 decimals so the upstream query does not carry floating point noise
+            return Math.round(cell * step * 1_000_000) / 1_000_000.0;
+        }
+    }
+
+    private record Entry(WeatherResponse weather, Instant expiresAt) {
+
+        boolean isStale() {
+            return !Instant.now().isBefore(expiresAt);
+        }
+    }
+}
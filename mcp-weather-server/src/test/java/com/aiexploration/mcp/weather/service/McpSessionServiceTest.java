@@ -0,0 +1,158 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.SessionConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class McpSessionServiceTest {
+
+    private static final String SECRET = "test-secret";
+
+    @Test
+    void issuedTokenIsValid() {
+        McpSessionService sessions = service(SECRET);
+
+        String token = sessions.issue();
+
+        assertThat(sessions.isValid(token)).isTrue();
+        assertThat(sessions.getStats()).containsEntry("issued", 1L).containsEntry("active", 1L);
+    }
+
+    @Test
+    void tokenIsValidOnEveryReplicaSharingTheSecret() {
+        String token = service(SECRET).issue();
+
+        assertThat(service(SECRET).isValid(token)).isTrue();
+        assertThat(service("other-secret").isValid(token)).isFalse();
+    }
+
+    @Test
+    void tamperedTokenIsRejected() {
+        McpSessionService sessions = service(SECRET);
+        String token = sessions.issue();
+        int dot = token.indexOf('.');
+
+        assertThat(sessions.isValid(flip(token, 0))).isFalse();          // payload
+        assertThat(sessions.isValid(flip(token, dot + 1))).isFalse();    // signature
+        assertThat(sessions.isValid(token.substring(0, dot))).isFalse();  // no signature
+        assertThat(sessions.isValid(token.substring(0, dot) + ".!!")).isFalse();
+        assertThat(sessions.isValid(token.substring(0, dot - 2) + token.substring(dot))).isFalse();
+        assertThat(sessions.isValid(null)).isFalse();
+        assertThat(sessions.getStats()).containsEntry("rejected", 6L);
+    }
+
+    @Test
+    void expiredTokenIsRejected() throws Exception {
+        McpSessionService sessions = service(SECRET);
+        long maxAge = Duration.ofHours(24).toSeconds();
+
+        assertThat(sessions.isValid(token(SECRET, Instant.now().getEpochSecond() - maxAge - 60))).isFalse();
+        assertThat(sessions.isValid(token(SECRET, Instant.now().getEpochSecond() - maxAge + 60))).isTrue();
+    }
+
+    @Test
+    void terminatedTokenIsRejected() {
+        McpSessionService sessions = service(SECRET);
+        String token = sessions.issue();
+
+        assertThat(sessions.terminate(token)).isEqualTo(McpSessionService.Termination.TERMINATED);
+
+        assertThat(sessions.isValid(token)).isFalse();
+        assertThat(sessions.terminate(token)).isEqualTo(McpSessionService.Termination.NOT_FOUND);
+        assertThat(sessions.getStats()).containsEntry("terminated", 1L).containsEntry("active", 0L);
+    }
+
+    @Test
+    void invalidTokenCannotBeTerminated() {
+        McpSessionService sessions = service(SECRET);
+
+        assertThat(sessions.terminate("not-a-token")).isEqualTo(McpSessionService.Termination.NOT_FOUND);
+        assertThat(sessions.terminate(service("other-secret").issue())).isEqualTo(McpSessionService.Termination.NOT_FOUND);
+    }
+
+    @Test
+    void revocationsOutliveTheTrackingBound() {
+        SessionConfig config = config(SECRET);
+        config.setMaxTracked(2);
+        McpSessionService sessions = new McpSessionService(config, new SimpleMeterRegistry());
+
+        List<String> tokens = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            String token = sessions.issue();
+            sessions.terminate(token);
+            tokens.add(token);
+        }
+
+        assertThat(tokens).noneMatch(sessions::isValid);
+    }
+
+    @Test
+    void terminationIsRefusedWhenTooManyAreRemembered() {
+        SessionConfig config = config(SECRET);
+        config.setMaxTerminated(3);
+        McpSessionService sessions = new McpSessionService(config, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 3; i++) {
+            assertThat(sessions.terminate(sessions.issue())).isEqualTo(McpSessionService.Termination.TERMINATED);
+        }
+        String token = sessions.issue();
+
+        assertThat(sessions.terminate(token)).isEqualTo(McpSessionService.Termination.REFUSED);
+        assertThat(sessions.isValid(token)).isTrue();
+        assertThat(sessions.getStats()).containsEntry("terminated", 3L).containsEntry("terminationsRefused", 1L);
+    }
+
+    @Test
+    void terminationIsLocalToTheInstance() {
+        McpSessionService replica = service(SECRET);
+        McpSessionService other = service(SECRET);
+        String token = replica.issue();
+
+        replica.terminate(token);
+
+        assertThat(replica.isValid(token)).isFalse();
+        assertThat(other.isValid(token)).isTrue();
+    }
+
+    private static McpSessionService service(String secret) {
+        return new McpSessionService(config(secret), new SimpleMeterRegistry());
+    }
+
+    private static SessionConfig config(String secret) {
+        SessionConfig config = new SessionConfig();
+        config.setSecret(secret);
+        config.setMaxAge(Duration.ofHours(24));
+        return config;
+    }
+
+    /**
+     * A token in the service's format, signed with the secret and issued at the given time
+     */
+    private static String token(String secret, long issuedAt) throws Exception {
+        byte[] payload = ByteBuffer.allocate(16 + Long.BYTES)
+                .put(new byte[16])
+                .putLong(issuedAt)
+                .array();
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+        return encoder.encodeToString(payload) + "." + encoder.encodeToString(mac.doFinal(payload));
+    }
+
+    private static String flip(String token, int index) {
+        char c = token.charAt(index);
+        return token.substring(0, index) + (c == 'A' ? 'B' : 'A') + token.substring(index + 1);
+    }
+}
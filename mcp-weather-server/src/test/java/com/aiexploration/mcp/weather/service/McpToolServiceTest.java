@@ -0,0 +1,77 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.model.Location;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class McpToolServiceTest {
+
+    private final OpenMeteoClient openMeteoClient = mock(OpenMeteoClient.class);
+    private final McpToolService tools = new McpToolService(openMeteoClient, new ObjectMapper());
+
+    @Test
+    void countryFilterLooksBeyondTheTopMatches() {
+        // The US Paris ranks far below the French one and its namesakes
+        List<Location> parises = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            parises.add(location("Paris", "France", "FR", 48.85 + i));
+        }
+        parises.add(location("Paris", "United States", "US", 33.66));
+        when(openMeteoClient.searchLocations("Paris", 100)).thenReturn(Mono.just(parises));
+        when(openMeteoClient.getCurrentWeather(anyDouble(), anyDouble())).thenReturn(Mono.empty());
+
+        String text = text(tools.executeTool("get_weather_by_name", Map.of("name", "Paris", "country", "US")));
+
+        assertThat(text).startsWith("Location: Paris").contains("United States").doesNotContain("France");
+        verify(openMeteoClient).getCurrentWeather(33.66, 0.0);
+    }
+
+    @Test
+    void withoutCountryOnlyTheTopMatchesAreFetched() {
+        when(openMeteoClient.searchLocations("Paris", 5)).thenReturn(Mono.just(List.of(location("Paris", "France", "FR", 48.85))));
+        when(openMeteoClient.getCurrentWeather(anyDouble(), anyDouble())).thenReturn(Mono.empty());
+
+        assertThat(text(tools.executeTool("get_weather_by_name", Map.of("name", "Paris")))).contains("France");
+    }
+
+    @Test
+    void unknownIncludeIsAnError() {
+        Object result = tools.executeTool("get_weather_by_name", Map.of("name", "Paris", "include", "hourly"))
+                .block(Duration.ofSeconds(1));
+
+        assertThat(result).isEqualTo(Map.of("error", "include must be one of [current, forecast, both], got: hourly"));
+        verify(openMeteoClient, never()).searchLocations(eq("Paris"), anyInt());
+    }
+
+    private static Location location(String name, String country, String countryCode, double latitude) {
+        Location location = new Location();
+        location.setName(name);
+        location.setCountry(country);
+        location.setCountryCode(countryCode);
+        location.setLatitude(latitude);
+        location.setLongitude(0.0);
+        return location;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static String text(Mono<Object> result) {
+        Map<String, Object> content = (Map<String, Object>) result.block(Duration.ofSeconds(1));
+        List<Map<String, Object>> items = (List<Map<String, Object>>) content.get("content");
+        return (String) items.get(0).get("text");
+    }
+}
@@ -0,0 +1,86 @@
+package com.aiexploration.mcp.weather.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PopularityTrackerTest {
+
+    @Test
+    void ranksKeysByCount() {
+        PopularityTracker<String> tracker = new PopularityTracker<>(100, Duration.ofHours(1));
+        record(tracker, "a", 1);
+        record(tracker, "b", 5);
+        record(tracker, "c", 3);
+
+        assertThat(tracker.top(2)).containsExactly("b", "c");
+        assertThat(tracker.size()).isEqualTo(3);
+    }
+
+    @Test
+    void countsAtMostCapacityKeys() {
+        PopularityTracker<Integer> tracker = new PopularityTracker<>(32, Duration.ofHours(1));
+
+        IntStream.range(0, 1000).forEach(tracker::record);
+
+        assertThat(tracker.size()).isLessThanOrEqualTo(32);
+    }
+
+    @Test
+    void heavyHitterSurvivesALongTail() {
+        PopularityTracker<Integer> tracker = new PopularityTracker<>(32, Duration.ofHours(1));
+
+        for (int i = 0; i < 2000; i++) {
+            tracker.record(-1);
+            tracker.record(i); // every other request is a key seen once
+        }
+
+        assertThat(tracker.top(1)).containsExactly(-1);
+    }
+
+    @Test
+    void countsDecayEveryWindow() throws InterruptedException {
+        PopularityTracker<String> tracker = new PopularityTracker<>(100, Duration.ofMillis(20));
+        record(tracker, "old", 10);
+        record(tracker, "once", 1);
+
+        Thread.sleep(40);
+        record(tracker, "new", 6);
+
+        // "old" was halved to 5, "once" to 0 and dropped
+        assertThat(tracker.top(10)).containsExactly("new", "old");
+    }
+
+    @Test
+    void concurrentRecordingKeepsEveryKey() throws InterruptedException {
+        PopularityTracker<Integer> tracker = new PopularityTracker<>(200, Duration.ofHours(1));
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        for (int t = 0; t < 8; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    tracker.record(i % 50);
+                    if (i % 10 == 0) {
+                        tracker.record(0);
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(tracker.size()).isEqualTo(50);
+        assertThat(tracker.top(1)).containsExactly(0);
+    }
+
+    private static void record(PopularityTracker<String> tracker, String key, int times) {
+        for (int i = 0; i < times; i++) {
+            tracker.record(key);
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.aiexploration.mcp.weather.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> flights = new SingleFlight<>();
+
+    @Test
+    void concurrentCallersShareOneCall() {
+        AtomicInteger calls = new AtomicInteger();
+        Sinks.One<String> upstream = Sinks.one();
+        List<String> results = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+            flights.execute("moscow", () -> {
+                calls.incrementAndGet();
+                return upstream.asMono();
+            }).subscribe(results::add);
+        }
+        upstream.tryEmitValue("sunny");
+
+        assertThat(calls).hasValue(1);
+        assertThat(results).containsExactly("sunny", "sunny", "sunny");
+    }
+
+    @Test
+    void differentKeysDoNotShare() {
+        AtomicInteger calls = new AtomicInteger();
+
+        flights.execute("moscow", () -> {
+            calls.incrementAndGet();
+            return Mono.never();
+        }).subscribe();
+        flights.execute("paris", () -> {
+            calls.incrementAndGet();
+            return Mono.never();
+        }).subscribe();
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void keyIsDroppedOnceTheCallCompletes() {
+        AtomicInteger calls = new AtomicInteger();
+
+        String first = flights.execute("moscow", () -> Mono.just("v" + calls.incrementAndGet())).block(Duration.ofSeconds(1));
+        String second = flights.execute("moscow", () -> Mono.just("v" + calls.incrementAndGet())).block(Duration.ofSeconds(1));
+
+        assertThat(first).isEqualTo("v1");
+        assertThat(second).isEqualTo("v2");
+    }
+
+    @Test
+    void errorsReachEveryCallerAndAreNotKept() {
+        Sinks.One<String> upstream = Sinks.one();
+        List<Throwable> errors = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            flights.execute("moscow", upstream::asMono).subscribe(value -> { }, errors::add);
+        }
+
+        upstream.tryEmitError(new IllegalStateException("upstream down"));
+
+        assertThat(errors).hasSize(2);
+        assertThat(flights.execute("moscow", () -> Mono.just("recovered")).block(Duration.ofSeconds(1)))
+                .isEqualTo("recovered");
+    }
+
+    @Test
+    void callIsCancelledOnlyWhenEverySubscriberCancels() {
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Mono<String> upstream = Mono.<String>never().doOnCancel(() -> cancelled.set(true));
+
+        Disposable first = flights.execute("moscow", () -> upstream).subscribe();
+        Disposable second = flights.execute("moscow", () -> upstream).subscribe();
+
+        first.dispose();
+        assertThat(cancelled).isFalse();
+
+        second.dispose();
+        assertThat(cancelled).isTrue();
+    }
+
+    @Test
+    void callIsStartedLazily() {
+        AtomicInteger calls = new AtomicInteger();
+
+        Mono<String> flight = flights.execute("moscow", () -> {
+            calls.incrementAndGet();
+            return Mono.just("sunny");
+        });
+
+        assertThat(calls).hasValue(0);
+        assertThat(flight.block(Duration.ofSeconds(1))).isEqualTo("sunny");
+        assertThat(calls).hasValue(1);
+    }
+}
@@ -0,0 +1,212 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.UpstreamConfig;
+import org.assertj.core.api.InstanceOfAssertFactories;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class UpstreamLimiterTest {
+
+    @Test
+    void limitGrowsWhileInUseAndLatencyIsStable() {
+        UpstreamConfig config = config(2);
+        config.setLatencyTolerance(1000); // latency never counts as congestion here
+        UpstreamLimiter limiter = new UpstreamLimiter(config);
+
+        Flux.range(0, 300)
+                .flatMap(i -> limiter.execute("forecast", () -> Mono.delay(Duration.ofMillis(1)).thenReturn(i)), 20)
+                .blockLast(Duration.ofSeconds(30));
+
+        assertThat(limit(limiter)).isGreaterThan(2).isLessThanOrEqualTo(config.getMaxLimit());
+        assertThat(limiter.getStats().get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void limitDoesNotGrowWhenMostlyIdle() {
+        UpstreamConfig config = config(10);
+        config.setLatencyTolerance(1000); // microsecond round trips jitter far more than 2x
+        UpstreamLimiter limiter = new UpstreamLimiter(config);
+
+        for (int i = 0; i < 50; i++) {
+            limiter.execute("forecast", () -> Mono.just("idle")).block(Duration.ofSeconds(1));
+        }
+
+        assertThat(limit(limiter)).isEqualTo(10);
+    }
+
+    @Test
+    void burstOfFailuresInFlightBacksOffOnce() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(8));
+        List<Sinks.One<String>> calls = startGated(limiter, 4);
+
+        calls.forEach(call -> call.tryEmitError(new TimeoutException("upstream timeout")));
+
+        assertThat(limit(limiter)).isEqualTo(4);
+        assertThat(limiter.getStats().get("dropped")).isEqualTo(4L);
+    }
+
+    @Test
+    void failureOfCallStartedAfterTheDecreaseBacksOffAgain() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(8));
+        startGated(limiter, 1).get(0).tryEmitError(new TimeoutException());
+        assertThat(limit(limiter)).isEqualTo(4);
+
+        startGated(limiter, 1).get(0).tryEmitError(new TimeoutException());
+
+        assertThat(limit(limiter)).isEqualTo(2);
+    }
+
+    @Test
+    void burstOfSlowResponsesBacksOffOnce() throws InterruptedException {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(8));
+        // A fast call sets the latency baseline
+        limiter.execute("forecast", () -> Mono.just("fast")).block(Duration.ofSeconds(1));
+        List<Sinks.One<String>> calls = startGated(limiter, 4);
+
+        Thread.sleep(50);
+        calls.forEach(call -> call.tryEmitValue("slow"));
+
+        assertThat(limit(limiter)).isEqualTo(4);
+    }
+
+    @Test
+    void slowRequestClassIsNotComparedWithAFastOne() {
+        UpstreamConfig config = config(8);
+        config.setLatencyTolerance(10); // absorbs timer jitter; a batch takes 40x as long as a lookup
+        UpstreamLimiter limiter = new UpstreamLimiter(config);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.execute("geocoding", () -> Mono.delay(Duration.ofMillis(5)).thenReturn("fast"))
+                    .block(Duration.ofSeconds(1));
+            limiter.execute("forecast/32x16", () -> Mono.delay(Duration.ofMillis(200)).thenReturn("slow"))
+                    .block(Duration.ofSeconds(1));
+        }
+
+        assertThat(limit(limiter)).isEqualTo(8);
+        assertThat(limiter.getStats().get("baselineLatencyMs"))
+                .asInstanceOf(InstanceOfAssertFactories.MAP)
+                .containsOnlyKeys("geocoding", "forecast/32x16");
+    }
+
+    @Test
+    void badRequestsDoNotLowerTheLimit() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(8));
+
+        assertThatThrownBy(() -> limiter.execute("forecast", () -> Mono.error(status(400))).block(Duration.ofSeconds(1)))
+                .isInstanceOf(WebClientResponseException.class);
+
+        assertThat(limit(limiter)).isEqualTo(8);
+        assertThat(limiter.getStats().get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void throttlingIsReportedAsOverload() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(8));
+
+        assertThatThrownBy(() -> limiter.execute("forecast", () -> Mono.error(status(429))).block(Duration.ofSeconds(1)))
+                .isInstanceOf(UpstreamOverloadedException.class)
+                .satisfies(e -> assertThat(((UpstreamOverloadedException) e).getRetryAfter()).isEqualTo(Duration.ofSeconds(1)));
+        assertThat(limit(limiter)).isEqualTo(4);
+    }
+
+    @Test
+    void callOverTheLimitWaitsForAFreeSlot() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(1));
+        Sinks.One<String> running = startGated(limiter, 1).get(0);
+        AtomicReference<String> queued = new AtomicReference<>();
+
+        limiter.execute("forecast", () -> Mono.just("queued")).subscribe(queued::set);
+        assertThat(queued.get()).isNull();
+        assertThat(limiter.getStats().get("queued")).isEqualTo(1);
+
+        running.tryEmitValue("done");
+
+        assertThat(queued.get()).isEqualTo("queued");
+        assertThat(limiter.getStats().get("inFlight")).isEqualTo(0);
+    }
+
+    @Test
+    void callIsRejectedWhenTheQueueIsFull() {
+        UpstreamConfig config = config(1);
+        config.setMaxQueue(0);
+        UpstreamLimiter limiter = new UpstreamLimiter(config);
+        startGated(limiter, 1);
+
+        assertThatThrownBy(() -> limiter.execute("forecast", () -> Mono.just("over")).block(Duration.ofSeconds(1)))
+                .isInstanceOf(UpstreamOverloadedException.class);
+        assertThat(limiter.getStats().get("rejected")).isEqualTo(1L);
+    }
+
+    @Test
+    void queuedCallTimesOutAfterMaxWait() {
+        UpstreamConfig config = config(1);
+        config.setMaxWait(Duration.ofMillis(50));
+        UpstreamLimiter limiter = new UpstreamLimiter(config);
+        startGated(limiter, 1);
+
+        assertThatThrownBy(() -> limiter.execute("forecast", () -> Mono.just("late")).block(Duration.ofSeconds(5)))
+                .isInstanceOf(UpstreamOverloadedException.class)
+                .hasMessageContaining("Timed out");
+        assertThat(limiter.getStats().get("queued")).isEqualTo(0);
+    }
+
+    @Test
+    void cancelledWaiterGivesUpItsPlace() {
+        UpstreamLimiter limiter = new UpstreamLimiter(config(1));
+        Sinks.One<String> running = startGated(limiter, 1).get(0);
+
+        Disposable waiter = limiter.execute("forecast", () -> Mono.just("never")).subscribe();
+        waiter.dispose();
+        assertThat(limiter.getStats().get("queued")).isEqualTo(0);
+
+        running.tryEmitValue("done");
+        assertThat(limiter.getStats().get("inFlight")).isEqualTo(0);
+        assertThat(limiter.execute("forecast", () -> Mono.just("next")).block(Duration.ofSeconds(1))).isEqualTo("next");
+    }
+
+    private static UpstreamConfig config(int initialLimit) {
+        UpstreamConfig config = new UpstreamConfig();
+        config.setInitialLimit(initialLimit);
+        config.setMinLimit(1);
+        config.setMaxLimit(50);
+        config.setMaxQueue(100);
+        config.setMaxWait(Duration.ofSeconds(10));
+        config.setBackoffRatio(0.5);
+        return config;
+    }
+
+    /**
+     * Start calls that complete only when their sink is signalled
+     */
+    private static List<Sinks.One<String>> startGated(UpstreamLimiter limiter, int count) {
+        List<Sinks.One<String>> calls = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Sinks.One<String> call = Sinks.one();
+            calls.add(call);
+            limiter.execute("forecast", call::asMono).subscribe(value -> { }, error -> { });
+        }
+        return calls;
+    }
+
+    private static int limit(UpstreamLimiter limiter) {
+        return (int) limiter.getStats().get("limit");
+    }
+
+    private static WebClientResponseException status(int status) {
+        return WebClientResponseException.create(status, "status " + status, HttpHeaders.EMPTY, new byte[0], null);
+    }
+}
@@ -0,0 +1,161 @@
+package com.aiexploration.mcp.weather.service;
+
+import com.aiexploration.mcp.weather.config.CacheConfig;
+import com.aiexploration.mcp.weather.model.CurrentWeather;
+import com.aiexploration.mcp.weather.model.WeatherResponse;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WeatherCacheTest {
+
+    private final WeatherCache cache = new WeatherCache(new CacheConfig());
+
+    @Test
+    void nearbyCoordinatesShareACell() {
+        WeatherCache.Key key = cache.key(55.7558, 37.6173, "temperature_2m", null, null);
+
+        assertThat(cache.key(55.7561, 37.6169, "temperature_2m", null, null)).isEqualTo(key);
+        assertThat(cache.key(55.80, 37.6173, "temperature_2m", null, null)).isNotEqualTo(key);
+        assertThat(cache.key(55.7558, 37.6173, "precipitation", null, null)).isNotEqualTo(key);
+        assertThat(key.latitude()).isEqualTo(55.76);
+    }
+
+    @Test
+    void freshEntryIsServedWithoutLoading() {
+        WeatherCache.Key key = freshKey();
+        AtomicInteger loads = new AtomicInteger();
+
+        WeatherResponse first = get(key, k -> Mono.fromSupplier(() -> weather(loads.incrementAndGet())));
+        WeatherResponse second = get(key, k -> Mono.fromSupplier(() -> weather(loads.incrementAndGet())));
+
+        assertThat(loads).hasValue(1);
+        assertThat(second).isSameAs(first);
+        assertThat(cache.getIfPresent(key)).isSameAs(first);
+        assertThat(cache.needsRefresh(key)).isFalse();
+    }
+
+    @Test
+    void failedLoadIsNotCached() {
+        WeatherCache.Key key = freshKey();
+
+        assertThat(get(key, k -> Mono.empty())).isNull();
+
+        assertThat(cache.getIfPresent(key)).isNull();
+        assertThat(get(key, k -> Mono.just(weather(1)))).isNotNull();
+    }
+
+    @Test
+    void staleEntryIsServedWhileRevalidating() {
+        WeatherCache.Key key = staleKey();
+        WeatherResponse old = weather(1);
+        WeatherResponse fresh = weather(2);
+        cache.put(key, old);
+        AtomicInteger loads = new AtomicInteger();
+        Sinks.One<WeatherResponse> upstream = Sinks.one();
+
+        // Both callers get the stale value at once; only one refresh goes upstream
+        assertThat(get(key, k -> {
+            loads.incrementAndGet();
+            return upstream.asMono();
+        })).isSameAs(old);
+        assertThat(get(key, k -> {
+            loads.incrementAndGet();
+            return upstream.asMono();
+        })).isSameAs(old);
+        assertThat(loads).hasValue(1);
+        assertThat(cache.getStats()).containsEntry("staleHits", 2L).containsEntry("refreshes", 1L);
+
+        upstream.tryEmitValue(fresh);
+
+        assertThat(get(key, k -> Mono.never())).isSameAs(fresh);
+    }
+
+    @Test
+    void failedRefreshKeepsTheStaleEntry() {
+        WeatherCache.Key key = staleKey();
+        WeatherResponse old = weather(1);
+        cache.put(key, old);
+
+        assertThat(get(key, k -> Mono.error(new IllegalStateException("upstream down")))).isSameAs(old);
+
+        // The refresh is no longer running, so the next stale hit tries again
+        AtomicInteger loads = new AtomicInteger();
+        assertThat(get(key, k -> {
+            loads.incrementAndGet();
+            return Mono.just(weather(2));
+        })).isSameAs(old);
+        assertThat(loads).hasValue(1);
+    }
+
+    @Test
+    void staleEntryIsNotAFreshHit() {
+        WeatherCache.Key key = staleKey();
+        cache.put(key, weather(1));
+
+        assertThat(cache.getIfPresent(key)).isNull();
+        assertThat(cache.needsRefresh(key)).isTrue();
+        assertThat(cache.needsRefresh(freshKey())).isTrue();
+    }
+
+    @Test
+    void refreshIsSkippedWhileOneIsRunning() {
+        WeatherCache.Key key = staleKey();
+        Sinks.One<WeatherResponse> upstream = Sinks.one();
+        cache.refresh(key, k -> upstream.asMono()).subscribe();
+
+        assertThat(cache.refresh(key, k -> Mono.just(weather(3))).block(Duration.ofSeconds(1))).isNull();
+
+        upstream.tryEmitValue(weather(2));
+        assertThat(cache.refresh(key, k -> Mono.just(weather(3))).block(Duration.ofSeconds(1))).isNotNull();
+    }
+
+    @Test
+    void mostRequestedCellsArePopular() {
+        WeatherCache.Key moscow = cache.key(55.75, 37.62, "temperature_2m", null, null);
+        WeatherCache.Key paris = cache.key(48.85, 2.35, "temperature_2m", null, null);
+        WeatherCache.Key tokyo = cache.key(35.68, 139.69, "temperature_2m", null, null);
+        for (int i = 0; i < 5; i++) {
+            cache.getIfPresent(paris);
+        }
+        for (int i = 0; i < 3; i++) {
+            cache.getIfPresent(moscow);
+        }
+        cache.getIfPresent(tokyo);
+
+        assertThat(cache.getPopular()).containsExactly(paris, moscow, tokyo);
+    }
+
+    /**
+     * Current conditions with a daily update interval: fresh for the rest of the (UTC) day
+     */
+    private WeatherCache.Key freshKey() {
+        return cache.key(55.75, 37.62, "temperature_2m", null, null);
+    }
+
+    /**
+     * No variables, so no update interval: stale as soon as it is stored, kept for stale-ttl
+     */
+    private WeatherCache.Key staleKey() {
+        return cache.key(55.75, 37.62, null, null, null);
+    }
+
+    private WeatherResponse get(WeatherCache.Key key, Function<WeatherCache.Key, Mono<WeatherResponse>> loader) {
+        return cache.get(key, loader).block(Duration.ofSeconds(1));
+    }
+
+    private static WeatherResponse weather(double temperature) {
+        CurrentWeather current = new CurrentWeather();
+        current.setInterval((int) Duration.ofDays(1).toSeconds());
+        current.setTemperature2m(temperature);
+        WeatherResponse weather = new WeatherResponse();
+        weather.setCurrent(current);
+        return weather;
+    }
+}